@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.permissioncontroller.appops.data.model.v31
+
+import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel.DiscreteOpModel
+
+/**
+ * Columnar representation of a list of [DiscreteOpModel], sorted by access time.
+ *
+ * Access times and durations are stored in parallel primitive arrays, while op names, attribution
+ * tags and proxies are interned and referenced by ID, so that the accesses of a package can be
+ * scanned (e.g. clustered) without allocating an object per access.
+ */
+class DiscreteOpEventBuffer
+private constructor(
+    /** The number of accesses in this buffer. */
+    val size: Int,
+    private val accessTimesMillis: LongArray,
+    private val durationsMillis: LongArray,
+    private val opIds: IntArray,
+    private val attributionTagIds: IntArray,
+    private val proxyIds: IntArray,
+    private val opNames: List<String>,
+    private val attributionTags: List<String>,
+    private val proxyPackageNames: List<String>,
+    private val proxyUserIds: List<Int?>,
+) {
+    /** The number of distinct op names in this buffer, op IDs being in `[0, opCount)`. */
+    val opCount: Int
+        get() = opNames.size
+
+    fun accessTimeMillisAt(index: Int): Long = accessTimesMillis[index]
+
+    fun durationMillisAt(index: Int): Long = durationsMillis[index]
+
+    fun opIdAt(index: Int): Int = opIds[index]
+
+    fun opNameOf(opId: Int): String = opNames[opId]
+
+    /** Returns the ID of the attribution tag of the access at [index], or [NO_ID] if none. */
+    fun attributionTagIdAt(index: Int): Int = attributionTagIds[index]
+
+    fun attributionTagOf(attributionTagId: Int): String = attributionTags[attributionTagId]
+
+    /** Returns the ID of the proxy of the access at [index], or [NO_ID] if none. */
+    fun proxyIdAt(index: Int): Int = proxyIds[index]
+
+    fun proxyPackageNameOf(proxyId: Int): String = proxyPackageNames[proxyId]
+
+    fun proxyUserIdOf(proxyId: Int): Int? = proxyUserIds[proxyId]
+
+    companion object {
+        /** The ID used for absent attribution tags and proxies. */
+        const val NO_ID = -1
+
+        private const val INDEX_BITS = 31
+        private const val INDEX_MASK = (1L shl INDEX_BITS) - 1
+
+        /** Creates a [DiscreteOpEventBuffer] of the given accesses, sorted by access time. */
+        fun of(accesses: List<DiscreteOpModel>): DiscreteOpEventBuffer {
+            val size = accesses.size
+            val order = sortedOrder(accesses)
+            val accessTimesMillis = LongArray(size)
+            val durationsMillis = LongArray(size)
+            val opIds = IntArray(size)
+            val attributionTagIds = IntArray(size)
+            val proxyIds = IntArray(size)
+            val opNames = Interner<String>()
+            val attributionTags = Interner<String>()
+            val proxies = Interner<Pair<String, Int?>>()
+            for (index in 0 until size) {
+                val access = accesses[order[index]]
+                accessTimesMillis[index] = access.accessTimeMillis
+                durationsMillis[index] = access.durationMillis
+                opIds[index] = opNames.idOf(access.opName)
+                attributionTagIds[index] =
+                    access.attributionTag?.let { attributionTags.idOf(it) } ?: NO_ID
+                proxyIds[index] =
+                    access.proxyPackageName?.let { proxies.idOf(it to access.proxyUserId) } ?: NO_ID
+            }
+            return DiscreteOpEventBuffer(
+                size,
+                accessTimesMillis,
+                durationsMillis,
+                opIds,
+                attributionTagIds,
+                proxyIds,
+                opNames.values,
+                attributionTags.values,
+                proxies.values.map { it.first },
+                proxies.values.map { it.second },
+            )
+        }
+
+        /**
+         * Returns the indices of the given accesses stably sorted by access time.
+         *
+         * Access times are packed together with their index into a single [LongArray] so that they
+         * can be sorted without boxing. This relies on the accesses spanning less than 2^32 ms
+         * (about 49 days), which is well above the discrete ops history window.
+         */
+        private fun sortedOrder(accesses: List<DiscreteOpModel>): IntArray {
+            val size = accesses.size
+            val order = IntArray(size)
+            if (size == 0) {
+                return order
+            }
+            var minAccessTimeMillis = Long.MAX_VALUE
+            var maxAccessTimeMillis = Long.MIN_VALUE
+            var isSorted = true
+            for (index in 0 until size) {
+                val accessTimeMillis = accesses[index].accessTimeMillis
+                if (accessTimeMillis < maxAccessTimeMillis) {
+                    isSorted = false
+                }
+                minAccessTimeMillis = minOf(minAccessTimeMillis, accessTimeMillis)
+                maxAccessTimeMillis = maxOf(maxAccessTimeMillis, accessTimeMillis)
+            }
+            if (isSorted) {
+                for (index in 0 until size) {
+                    order[index] = index
+                }
+                return order
+            }
+            if (maxAccessTimeMillis - minAccessTimeMillis > Int.MAX_VALUE.toLong() * 2) {
+                // Not expected in practice, fall back to a boxed sort.
+                accesses.indices
+                    .sortedBy { accesses[it].accessTimeMillis }
+                    .forEachIndexed { index, accessIndex -> order[index] = accessIndex }
+                return order
+            }
+            val keys = LongArray(size)
+            for (index in 0 until size) {
+                val relativeTimeMillis = accesses[index].accessTimeMillis - minAccessTimeMillis
+                keys[index] = (relativeTimeMillis shl INDEX_BITS) or index.toLong()
+            }
+            keys.sort()
+            for (index in 0 until size) {
+                order[index] = (keys[index] and INDEX_MASK).toInt()
+            }
+            return order
+        }
+    }
+
+    private class Interner<T> {
+        private val ids = HashMap<T, Int>()
+        val values = mutableListOf<T>()
+
+        fun idOf(value: T): Int =
+            ids.getOrPut(value) {
+                values.add(value)
+                values.size - 1
+            }
+    }
+}
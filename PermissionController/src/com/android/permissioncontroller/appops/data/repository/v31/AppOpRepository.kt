@@ -41,6 +41,7 @@ import com.android.permissioncontroller.data.repository.v31.PermissionChangeList
 import com.android.permissioncontroller.permission.data.repository.v31.PermissionRepository
 import com.android.permissioncontroller.permission.utils.PermissionMapping
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.concurrent.Volatile
 import kotlin.coroutines.suspendCoroutine
 import kotlinx.coroutines.CoroutineDispatcher
@@ -48,6 +49,7 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.Flow
 import kotlinx.coroutines.flow.callbackFlow
 import kotlinx.coroutines.flow.flowOn
@@ -108,17 +110,38 @@ class AppOpRepositoryImpl(
     ): Flow<List<DiscretePackageOpsModel>> {
         return callbackFlow {
                 var job: Job? = null
-                send(getDiscreteOps(opNames))
+                val updatePending = AtomicBoolean(false)
+                val discreteOpsStore =
+                    DiscreteOpsStore(getDiscreteOpsHistoryWindowMillis()) {
+                        beginTimeMillis,
+                        endTimeMillis ->
+                        fetchDiscreteOps(opNames, beginTimeMillis, endTimeMillis)
+                    }
+                send(discreteOpsStore.load())
 
-                fun sendUpdate() {
+                fun sendUpdate(reloadAll: Boolean = false) {
+                    if (reloadAll) {
+                        discreteOpsStore.invalidate()
+                    }
+                    updatePending.set(true)
                     if (job == null || job?.isActive == false) {
-                        job = coroutineScope.launch { trySend(getDiscreteOps(opNames)) }
+                        job =
+                            coroutineScope.launch {
+                                // Collapse bursts of changes (e.g. a busy camera or microphone
+                                // app) into a single update.
+                                do {
+                                    delay(DISCRETE_OPS_UPDATE_DEBOUNCE_MILLIS)
+                                    updatePending.set(false)
+                                    trySend(discreteOpsStore.load())
+                                } while (updatePending.get())
+                            }
                     }
                 }
 
                 val appOpListener =
                     AppOpChangeListener(opNames.toSet(), appOpsManager) { sendUpdate() }
-                val packageListener = PackageChangeListener { sendUpdate() }
+                // Package removals drop their history, so the stored ops have to be reloaded.
+                val packageListener = PackageChangeListener { sendUpdate(reloadAll = true) }
                 val permissionListener = PermissionChangeListener(packageManager) { sendUpdate() }
                 packageListener.register()
                 appOpListener.register()
@@ -132,13 +155,16 @@ class AppOpRepositoryImpl(
             .flowOn(dispatcher)
     }
 
-    private suspend fun getDiscreteOps(opNames: List<String>): List<DiscretePackageOpsModel> {
-        val duration =
-            if (DeviceUtils.isHandheld()) TimeUnit.DAYS.toMillis(7) else TimeUnit.DAYS.toMillis(1)
-        val currentTime = System.currentTimeMillis()
-        val beginTimeMillis = currentTime - duration
+    private fun getDiscreteOpsHistoryWindowMillis(): Long =
+        if (DeviceUtils.isHandheld()) TimeUnit.DAYS.toMillis(7) else TimeUnit.DAYS.toMillis(1)
+
+    private suspend fun fetchDiscreteOps(
+        opNames: List<String>,
+        beginTimeMillis: Long,
+        endTimeMillis: Long
+    ): Map<DiscreteOpsStore.PackageKey, List<DiscreteOpModel>> {
         val request =
-            HistoricalOpsRequest.Builder(beginTimeMillis, currentTime)
+            HistoricalOpsRequest.Builder(beginTimeMillis, endTimeMillis)
                 .setFlags(OP_FLAG_SELF or OP_FLAG_TRUSTED_PROXIED)
                 .setOpNames(opNames)
                 .setHistoryFlags(HISTORY_FLAG_DISCRETE or HISTORY_FLAG_GET_ATTRIBUTION_CHAINS)
@@ -148,7 +174,7 @@ class AppOpRepositoryImpl(
                 it.resumeWith(Result.success(ops))
             }
         }
-        val discreteOpsResult = mutableListOf<DiscretePackageOpsModel>()
+        val discreteOpsResult = LinkedHashMap<DiscreteOpsStore.PackageKey, List<DiscreteOpModel>>()
         // Read through nested (uid -> package name -> attribution tag -> op -> discrete events)
         // historical ops data structure
         for (uidIndex in 0 until historicalOps.uidCount) {
@@ -184,7 +210,10 @@ class AppOpRepositoryImpl(
                         }
                     }
                 }
-                discreteOpsResult.add(DiscretePackageOpsModel(packageName, userId, appOpEvents))
+                if (appOpEvents.isNotEmpty()) {
+                    discreteOpsResult[DiscreteOpsStore.PackageKey(packageName, userId)] =
+                        appOpEvents
+                }
             }
         }
         return discreteOpsResult
@@ -263,5 +292,7 @@ class AppOpRepositoryImpl(
 
         private const val OPS_LAST_ACCESS_FLAGS =
             OP_FLAG_SELF or OP_FLAG_TRUSTED_PROXIED or OP_FLAG_TRUSTED_PROXY
+
+        private const val DISCRETE_OPS_UPDATE_DEBOUNCE_MILLIS = 500L
     }
 }
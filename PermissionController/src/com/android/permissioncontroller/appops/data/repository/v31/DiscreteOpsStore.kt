@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.permissioncontroller.appops.data.repository.v31
+
+import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel
+import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel.DiscreteOpModel
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.Volatile
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+
+/**
+ * Keeps the discrete ops of the last query in memory so that subsequent loads only need to query
+ * the events that happened after the previous load (the high-water mark), evicting the events that
+ * are now out of the history window.
+ *
+ * @param historyWindowMillis how far back in time the discrete ops are loaded
+ * @param currentTimeMillis returns the current wall clock time
+ * @param fetchDiscreteOps fetches the discrete ops of each package between the given begin and end
+ *   times
+ */
+class DiscreteOpsStore(
+    private val historyWindowMillis: Long,
+    private val currentTimeMillis: () -> Long = System::currentTimeMillis,
+    private val fetchDiscreteOps:
+        suspend (beginTimeMillis: Long, endTimeMillis: Long) -> Map<PackageKey, List<DiscreteOpModel>>,
+) {
+    private val mutex = Mutex()
+    private val packageOps = LinkedHashMap<PackageKey, MutableSet<DiscreteOpModel>>()
+    private var highWaterMarkMillis: Long? = null
+    @Volatile private var invalidated = false
+
+    /** Discards the stored ops, so that the next [load] queries the whole history window. */
+    fun invalidate() {
+        invalidated = true
+    }
+
+    /** Returns a snapshot of the discrete ops in the history window, up to the current time. */
+    suspend fun load(): List<DiscretePackageOpsModel> =
+        mutex.withLock {
+            val currentTime = currentTimeMillis()
+            val beginTimeMillis = currentTime - historyWindowMillis
+            val lastHighWaterMarkMillis = highWaterMarkMillis
+            if (invalidated || lastHighWaterMarkMillis == null) {
+                invalidated = false
+                packageOps.clear()
+                mergeDiscreteOps(fetchDiscreteOps(beginTimeMillis, currentTime))
+            } else {
+                // Re-query a short overlap before the high-water mark, as events are only recorded
+                // once they finish and their time stamps are rounded. Events starting in the
+                // overlap are replaced, and the ones starting before it and returned again are
+                // deduplicated when merged.
+                val refetchBeginTimeMillis =
+                    maxOf(beginTimeMillis, lastHighWaterMarkMillis - OVERLAP_MILLIS)
+                evictDiscreteOps { it.accessTimeMillis >= refetchBeginTimeMillis }
+                evictDiscreteOps {
+                    it.accessTimeMillis + maxOf(it.durationMillis, 0) < beginTimeMillis
+                }
+                mergeDiscreteOps(fetchDiscreteOps(refetchBeginTimeMillis, currentTime))
+            }
+            highWaterMarkMillis = currentTime
+            // The models are mutated by their consumers, so a new copy is emitted every time.
+            packageOps.map { (key, appOpEvents) ->
+                DiscretePackageOpsModel(key.packageName, key.userId, appOpEvents.toList())
+            }
+        }
+
+    private fun mergeDiscreteOps(newPackageOps: Map<PackageKey, List<DiscreteOpModel>>) {
+        for ((key, appOpEvents) in newPackageOps) {
+            packageOps.getOrPut(key) { LinkedHashSet() }.addAll(appOpEvents)
+        }
+    }
+
+    private fun evictDiscreteOps(predicate: (DiscreteOpModel) -> Boolean) {
+        val iterator = packageOps.values.iterator()
+        while (iterator.hasNext()) {
+            val appOpEvents = iterator.next()
+            appOpEvents.removeAll(predicate)
+            if (appOpEvents.isEmpty()) {
+                iterator.remove()
+            }
+        }
+    }
+
+    /** The package whose discrete ops are stored. */
+    data class PackageKey(val packageName: String, val userId: Int)
+
+    companion object {
+        /** How far before the high-water mark the discrete ops are queried again. */
+        val OVERLAP_MILLIS = TimeUnit.MINUTES.toMillis(2)
+    }
+}
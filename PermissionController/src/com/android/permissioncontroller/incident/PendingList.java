@@ -24,6 +24,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.IncidentManager;
+import android.service.notification.StatusBarNotification;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 
@@ -71,6 +73,13 @@ public class PendingList {
     private static final SimpleDateFormat sDateFormatter =
             new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
+    /**
+     * The notifications posted by this process on the last update, keyed by the uri of their
+     * report, with the label they were posted with. Used to avoid re-posting the ones that are
+     * still showing on each update.
+     */
+    private final ArrayMap<String, String> mShownNotifications = new ArrayMap<>();
+
     /**
      * List of currently pending records.
      */
@@ -103,14 +112,17 @@ public class PendingList {
         private final int mFlags;
         private final NotificationManager mNm;
         private final Formatting mFormatting;
+        private final ArrayMap<String, String> mShownNotifications;
+        private final ArrayMap<String, String> mAppLabels = new ArrayMap<>();
         private Collator mCollator;
 
         /**
          * Constructor.
          */
-        Updater(Context context, int flags) {
+        Updater(Context context, int flags, ArrayMap<String, String> shownNotifications) {
             mContext = context;
             mFlags = flags;
+            mShownNotifications = shownNotifications;
             mNm = context.getSystemService(NotificationManager.class);
             mFormatting = new Formatting(context);
             mCollator = Collator.getInstance(
@@ -144,7 +156,7 @@ public class PendingList {
             final int recCount = reports.size();
             for (int i = 0; i < recCount; i++) {
                 final IncidentManager.PendingReport report = reports.get(i);
-                final String label = mFormatting.getAppLabel(report.getRequestingPackage());
+                final String label = getAppLabel(report.getRequestingPackage());
                 if (label == null) {
                     Log.w(TAG, "Application (or its label) could not be found. Summarily "
                             + " denying report: " + report.getRequestingPackage());
@@ -226,6 +238,13 @@ public class PendingList {
                 ConfirmationActivity.finishCurrent();
             }
 
+            // Remember what is showing, so we don't post it again next time.
+            mShownNotifications.clear();
+            for (int i = 0; i < notificationCount; i++) {
+                final Rec rec = recs.get(i);
+                mShownNotifications.put(rec.report.getUri().toString(), rec.label);
+            }
+
             // Save this list, so we know what we did for next time.
             final SharedPreferences.Editor editor = prefs.edit();
             editor.putStringSet(SHARED_PREFS_KEY_NOTIFICATIONS, currentNotifications);
@@ -233,14 +252,42 @@ public class PendingList {
         }
 
         /**
-         * Show the list of notifications and cancel any unneeded ones.
+         * Get the label of the requesting app, only looking it up once per package as
+         * many reports can come from the same app.
+         */
+        private String getAppLabel(String pkg) {
+            if (mAppLabels.containsKey(pkg)) {
+                return mAppLabels.get(pkg);
+            }
+            final String label = mFormatting.getAppLabel(pkg);
+            mAppLabels.put(pkg, label);
+            return label;
+        }
+
+        /**
+         * Show the list of notifications, skipping the ones that are already showing.
          */
         private void showNotifications(List<Rec> recs) {
             createNotificationChannel();
 
+            // Only skip the notifications that are still posted, as they can be dismissed or
+            // cleared without going through this process.
+            final ArraySet<String> activeTags = new ArraySet<>();
+            if (!mShownNotifications.isEmpty()) {
+                for (StatusBarNotification sbn : mNm.getActiveNotifications()) {
+                    if (sbn.getId() == Constants.INCIDENT_NOTIFICATION_ID) {
+                        activeTags.add(sbn.getTag());
+                    }
+                }
+            }
+
             final int recCount = recs.size();
             for (int i = 0; i < recCount; i++) {
                 final Rec rec = recs.get(i);
+                final String uri = rec.report.getUri().toString();
+                if (activeTags.contains(uri) && rec.label.equals(mShownNotifications.get(uri))) {
+                    continue;
+                }
 
                 // Intent for the confirmation dialog.
                 final PendingIntent dialog = PendingIntent.getActivity(mContext, 0,
@@ -274,8 +321,7 @@ public class PendingList {
                         .build();
 
                 // Show the notification
-                mNm.notify(rec.report.getUri().toString(), Constants.INCIDENT_NOTIFICATION_ID,
-                        notification);
+                mNm.notify(uri, Constants.INCIDENT_NOTIFICATION_ID, notification);
             }
         }
 
@@ -334,6 +380,6 @@ public class PendingList {
      * Update the notifications and dialog to reflect the current state of affairs.
      */
     public void updateState(Context context, int flags) {
-        (new Updater(context, flags)).updateState();
+        (new Updater(context, flags, mShownNotifications)).updateState();
     }
 }
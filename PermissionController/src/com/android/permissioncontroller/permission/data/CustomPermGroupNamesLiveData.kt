@@ -35,7 +35,6 @@ object CustomPermGroupNamesLiveData : SmartUpdateMediatorLiveData<List<String>>(
     }
 
     override fun onUpdate() {
-        val platformGroupNames = PermissionMapping.getPlatformPermissionGroups()
         val groupNames = mutableListOf<String>()
 
         val allPackages = packagesLiveData.value ?: return
@@ -56,7 +55,7 @@ object CustomPermGroupNamesLiveData : SmartUpdateMediatorLiveData<List<String>>(
                         // If this permission is already in a group, no more work to do
                         if (
                             groupNames.contains(permission.group) ||
-                                platformGroupNames.contains(permission.group) ||
+                                PermissionMapping.isPlatformPermissionGroup(permission.group) ||
                                 groupNames.contains(permission.name)
                         ) {
                             continue
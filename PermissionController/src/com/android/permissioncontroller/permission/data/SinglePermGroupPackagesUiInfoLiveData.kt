@@ -35,8 +35,7 @@ private constructor(private val app: Application, private val permGroupName: Str
     SmartUpdateMediatorLiveData<Map<Pair<String, UserHandle>, AppPermGroupUiInfo>>() {
 
     private val permGroupLiveData = PermGroupLiveData[permGroupName]
-    private val isCustomGroup =
-        !PermissionMapping.getPlatformPermissionGroups().contains(permGroupName)
+    private val isCustomGroup = !PermissionMapping.isPlatformPermissionGroup(permGroupName)
     private val permGroupPackagesLiveData =
         PermGroupsPackagesLiveData.get(customGroups = isCustomGroup)
 
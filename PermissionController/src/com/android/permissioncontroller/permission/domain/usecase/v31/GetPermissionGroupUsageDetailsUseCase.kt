@@ -21,6 +21,7 @@ import android.app.AppOpsManager
 import android.os.UserHandle
 import android.permission.flags.Flags
 import com.android.modules.utils.build.SdkLevel
+import com.android.permissioncontroller.appops.data.model.v31.DiscreteOpEventBuffer
 import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel
 import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel.DiscreteOpModel
 import com.android.permissioncontroller.appops.data.repository.v31.AppOpRepository
@@ -78,10 +79,8 @@ class GetPermissionGroupUsageDetailsUseCase(
                     }
             val attributedPackageOps: List<DiscretePackageOpsModel> =
                 filteredPackageOps.groupByAttributionLabelIfNeeded()
-            val clusteredPackageOps: List<DiscretePackageOpsModel> =
-                attributedPackageOps.createAccessClusters()
             val permissionTimelineUsageModels: List<PermissionTimelineUsageModel> =
-                clusteredPackageOps.buildPermissionTimelineUsage()
+                attributedPackageOps.buildClusteredPermissionTimelineUsage()
             PermissionTimelineUsageModelWrapper.Success(permissionTimelineUsageModels)
         }
     }
@@ -128,80 +127,99 @@ class GetPermissionGroupUsageDetailsUseCase(
             .flatten()
 
     /**
-     * App op accesses are merged if the timestamp of the access is within the cluster spacing i.e.
-     * one minute.
+     * App op accesses are merged into clusters if the timestamp of the access is within the cluster
+     * spacing i.e. one minute, and each cluster is turned into a [PermissionTimelineUsageModel].
+     *
+     * The accesses of each package are scanned once in a [DiscreteOpEventBuffer], as packages with
+     * heavy usage (e.g. location) can have tens of thousands of accesses in the history window.
      */
-    private fun List<DiscretePackageOpsModel>.createAccessClusters():
-        List<DiscretePackageOpsModel> {
-        return flatMap { packageOps ->
-            val clusters = mutableListOf<DiscretePackageOpsModel>()
-            val currentCluster = mutableListOf<DiscreteOpModel>()
-            val sortedOps = packageOps.appOpAccesses.sortedBy { it.accessTimeMillis }
-            for (discreteAccess in sortedOps) {
-                if (currentCluster.isEmpty()) {
-                    currentCluster.add(discreteAccess)
-                } else if (!canAccessBeAddedToCluster(discreteAccess, currentCluster)) {
-                    clusters.add(
-                        DiscretePackageOpsModel(
-                            packageOps.packageName,
-                            packageOps.userId,
-                            currentCluster.toMutableList(),
-                            packageOps.attributionLabel,
-                            packageOps.isUserSensitive
+    private fun List<DiscretePackageOpsModel>.buildClusteredPermissionTimelineUsage():
+        List<PermissionTimelineUsageModel> {
+        val timelineUsages = mutableListOf<PermissionTimelineUsageModel>()
+        for (packageOps in this) {
+            val accesses = DiscreteOpEventBuffer.of(packageOps.appOpAccesses)
+            val isOpIdClusteredByItself =
+                BooleanArray(accesses.opCount) { isOpClusteredByItself(accesses.opNameOf(it)) }
+            var clusterStart = 0
+            var clusterMostRecentAccessMillis = Long.MIN_VALUE
+            for (index in 0 until accesses.size) {
+                if (
+                    index > clusterStart &&
+                        !canAccessBeAddedToCluster(
+                            accesses,
+                            index,
+                            clusterMostRecentAccessMillis,
+                            isOpIdClusteredByItself
                         )
+                ) {
+                    timelineUsages.add(
+                        buildPermissionTimelineUsage(packageOps, accesses, clusterStart, index)
                     )
-                    currentCluster.clear()
-                    currentCluster.add(discreteAccess)
-                } else {
-                    currentCluster.add(discreteAccess)
+                    clusterStart = index
+                    clusterMostRecentAccessMillis = Long.MIN_VALUE
                 }
+                clusterMostRecentAccessMillis =
+                    maxOf(clusterMostRecentAccessMillis, getMostRecentAccessMillis(accesses, index))
             }
-
-            if (currentCluster.isNotEmpty()) {
-                clusters.add(
-                    DiscretePackageOpsModel(
-                        packageOps.packageName,
-                        packageOps.userId,
-                        currentCluster.toMutableList(),
-                        packageOps.attributionLabel,
-                        packageOps.isUserSensitive
-                    )
+            if (accesses.size > 0) {
+                timelineUsages.add(
+                    buildPermissionTimelineUsage(packageOps, accesses, clusterStart, accesses.size)
                 )
             }
-            clusters
         }
+        return timelineUsages
     }
 
-    private fun List<DiscretePackageOpsModel>.buildPermissionTimelineUsage():
-        List<PermissionTimelineUsageModel> {
-        return this.map { packageOpsCluster ->
-            val startTimeMillis = packageOpsCluster.appOpAccesses.minOf { it.accessTimeMillis }
-            // The end minute is exclusive here in terms of access, i.e. [1..5) as the private data
-            // was not accessed at minute 5, it helps calculate the duration correctly.
-            val endTimeMillis =
-                packageOpsCluster.appOpAccesses.maxOf { appOpEvent ->
-                    if (appOpEvent.durationMillis > 0)
-                        appOpEvent.accessTimeMillis + appOpEvent.durationMillis
-                    else appOpEvent.accessTimeMillis + ONE_MINUTE_MS
-                }
-            val durationMillis = endTimeMillis - startTimeMillis
-            val proxy = packageOpsCluster.appOpAccesses.firstOrNull { it.proxyPackageName != null }
-
-            PermissionTimelineUsageModel(
-                packageOpsCluster.packageName,
-                packageOpsCluster.userId,
-                packageOpsCluster.appOpAccesses.map { it.opName }.toSet(),
-                startTimeMillis,
-                // Make the end time inclusive i.e. [1..4]
-                endTimeMillis - ONE_MINUTE_MS,
-                durationMillis,
-                packageOpsCluster.isUserSensitive,
-                packageOpsCluster.attributionLabel,
-                packageOpsCluster.appOpAccesses.mapNotNull { it.attributionTag }.toSet(),
-                proxy?.proxyPackageName,
-                proxy?.proxyUserId,
-            )
+    /** Builds the [PermissionTimelineUsageModel] of the accesses in [clusterStart, clusterEnd). */
+    private fun buildPermissionTimelineUsage(
+        packageOps: DiscretePackageOpsModel,
+        accesses: DiscreteOpEventBuffer,
+        clusterStart: Int,
+        clusterEnd: Int
+    ): PermissionTimelineUsageModel {
+        // Accesses are sorted by access time.
+        val startTimeMillis = accesses.accessTimeMillisAt(clusterStart)
+        // The end minute is exclusive here in terms of access, i.e. [1..5) as the private data
+        // was not accessed at minute 5, it helps calculate the duration correctly.
+        var endTimeMillis = Long.MIN_VALUE
+        val opNames = mutableSetOf<String>()
+        val attributionTags = mutableSetOf<String>()
+        var proxyId = DiscreteOpEventBuffer.NO_ID
+        for (index in clusterStart until clusterEnd) {
+            val accessTimeMillis = accesses.accessTimeMillisAt(index)
+            val durationMillis = accesses.durationMillisAt(index)
+            endTimeMillis =
+                maxOf(
+                    endTimeMillis,
+                    if (durationMillis > 0) accessTimeMillis + durationMillis
+                    else accessTimeMillis + ONE_MINUTE_MS
+                )
+            opNames.add(accesses.opNameOf(accesses.opIdAt(index)))
+            val attributionTagId = accesses.attributionTagIdAt(index)
+            if (attributionTagId != DiscreteOpEventBuffer.NO_ID) {
+                attributionTags.add(accesses.attributionTagOf(attributionTagId))
+            }
+            if (proxyId == DiscreteOpEventBuffer.NO_ID) {
+                proxyId = accesses.proxyIdAt(index)
+            }
         }
+        val durationMillis = endTimeMillis - startTimeMillis
+        val hasProxy = proxyId != DiscreteOpEventBuffer.NO_ID
+
+        return PermissionTimelineUsageModel(
+            packageOps.packageName,
+            packageOps.userId,
+            opNames,
+            startTimeMillis,
+            // Make the end time inclusive i.e. [1..4]
+            endTimeMillis - ONE_MINUTE_MS,
+            durationMillis,
+            packageOps.isUserSensitive,
+            packageOps.attributionLabel,
+            attributionTags,
+            if (hasProxy) accesses.proxyPackageNameOf(proxyId) else null,
+            if (hasProxy) accesses.proxyUserIdOf(proxyId) else null,
+        )
     }
 
     private fun isLocationByPassEnabled(): Boolean =
@@ -218,32 +236,40 @@ class GetPermissionGroupUsageDetailsUseCase(
         return false
     }
 
+    /**
+     * Returns whether the access at [index] can be added to the cluster ending with the access at
+     * `index - 1`, whose most recent access is [clusterMostRecentAccessMillis].
+     */
     private fun canAccessBeAddedToCluster(
-        currentAccess: DiscreteOpModel,
-        clusteredAccesses: List<DiscreteOpModel>
+        accesses: DiscreteOpEventBuffer,
+        index: Int,
+        clusterMostRecentAccessMillis: Long,
+        isOpIdClusteredByItself: BooleanArray
     ): Boolean {
-        val clusterOp = clusteredAccesses.last().opName
+        val currentOpId = accesses.opIdAt(index)
+        val clusterOpId = accesses.opIdAt(index - 1)
         if (
-            (isOpClusteredByItself(currentAccess.opName) || isOpClusteredByItself(clusterOp)) &&
-                currentAccess.opName != clusteredAccesses.last().opName
+            (isOpIdClusteredByItself[currentOpId] || isOpIdClusteredByItself[clusterOpId]) &&
+                currentOpId != clusterOpId
         ) {
             return false
         }
-        val currentAccessMinute = currentAccess.accessTimeMillis / ONE_MINUTE_MS
-        val prevMostRecentAccessMillis =
-            clusteredAccesses.maxOf { discreteAccess ->
-                if (discreteAccess.durationMillis > 0)
-                // accessTimeMillis and durationMillis are rounded at minute level. if an entry
-                // says mic was accessed for 3 minutes at minute 45, then the end time should
-                // be minute 47, as the mic was accessed at minute 45, 46, and 47.
-                // 45 + 3 - 1 = 47
-                discreteAccess.accessTimeMillis + discreteAccess.durationMillis - ONE_MINUTE_MS
-                else discreteAccess.accessTimeMillis
-            }
-        val prevMostRecentAccessMinute = prevMostRecentAccessMillis / ONE_MINUTE_MS
+        val currentAccessMinute = accesses.accessTimeMillisAt(index) / ONE_MINUTE_MS
+        val prevMostRecentAccessMinute = clusterMostRecentAccessMillis / ONE_MINUTE_MS
         return (currentAccessMinute - prevMostRecentAccessMinute) <= CLUSTER_SPACING_MINUTES
     }
 
+    private fun getMostRecentAccessMillis(accesses: DiscreteOpEventBuffer, index: Int): Long {
+        val accessTimeMillis = accesses.accessTimeMillisAt(index)
+        val durationMillis = accesses.durationMillisAt(index)
+        // accessTimeMillis and durationMillis are rounded at minute level. if an entry says mic
+        // was accessed for 3 minutes at minute 45, then the end time should be minute 47, as the
+        // mic was accessed at minute 45, 46, and 47.
+        // 45 + 3 - 1 = 47
+        return if (durationMillis > 0) accessTimeMillis + durationMillis - ONE_MINUTE_MS
+        else accessTimeMillis
+    }
+
     private fun getGroupOfPlatformPermission(permission: String): String? {
         if (permission == Manifest.permission.LOCATION_BYPASS) {
             return Manifest.permission_group.LOCATION
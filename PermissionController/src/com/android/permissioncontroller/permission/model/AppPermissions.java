@@ -21,10 +21,14 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.UserHandle;
 import android.util.ArrayMap;
+import android.util.ArraySet;
+
+import androidx.annotation.Nullable;
 
 import com.android.permissioncontroller.permission.utils.Utils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -49,7 +53,7 @@ public final class AppPermissions {
 
     private final Context mContext;
 
-    private final CharSequence mAppLabel;
+    private CharSequence mAppLabel;
 
     private final Runnable mOnErrorCallback;
 
@@ -58,6 +62,9 @@ public final class AppPermissions {
     /** Do not actually commit changes to the platform until {@link #persistChanges} is called */
     private final boolean mDelayChanges;
 
+    /** If not {@code null}, only the groups of these permissions are loaded */
+    private final @Nullable Set<String> mFilterPermissions;
+
     private PackageInfo mPackageInfo;
 
     public AppPermissions(Context context, PackageInfo packageInfo, boolean sortGroups,
@@ -67,12 +74,27 @@ public final class AppPermissions {
 
     public AppPermissions(Context context, PackageInfo packageInfo, boolean sortGroups,
             boolean delayChanges, Runnable onErrorCallback) {
+        this(context, packageInfo, sortGroups, delayChanges, onErrorCallback, null);
+    }
+
+    /**
+     * Create the permissions of an app, only loading the groups of the given permissions.
+     *
+     * <p>Building a group loads all its permissions and their app ops, so callers that only act on
+     * a few permissions (e.g. the permission controller service) should only load their groups.
+     *
+     * @param filterPermissions If not {@code null}, only the groups containing any of these
+     *                          permissions are loaded
+     */
+    public AppPermissions(Context context, PackageInfo packageInfo, boolean sortGroups,
+            boolean delayChanges, Runnable onErrorCallback,
+            @Nullable Collection<String> filterPermissions) {
         mContext = context;
         mPackageInfo = packageInfo;
-        mAppLabel = Utils.getAppLabel(packageInfo.applicationInfo, context);
         mSortGroups = sortGroups;
         mDelayChanges = delayChanges;
         mOnErrorCallback = onErrorCallback;
+        mFilterPermissions = filterPermissions != null ? new ArraySet<>(filterPermissions) : null;
         loadPermissionGroups();
     }
 
@@ -86,6 +108,10 @@ public final class AppPermissions {
     }
 
     public CharSequence getAppLabel() {
+        // Loaded lazily, as most users of this class never need it
+        if (mAppLabel == null) {
+            mAppLabel = Utils.getAppLabel(mPackageInfo.applicationInfo, mContext);
+        }
         return mAppLabel;
     }
 
@@ -143,6 +169,9 @@ public final class AppPermissions {
 
         if (mPackageInfo.requestedPermissions != null) {
             for (String requestedPerm : mPackageInfo.requestedPermissions) {
+                if (mFilterPermissions != null && !mFilterPermissions.contains(requestedPerm)) {
+                    continue;
+                }
                 if (getGroupForPermission(requestedPerm) == null) {
                     AppPermissionGroup group = AppPermissionGroup.create(mContext, mPackageInfo,
                             requestedPerm, mDelayChanges);
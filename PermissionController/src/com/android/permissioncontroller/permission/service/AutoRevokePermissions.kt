@@ -124,7 +124,7 @@ suspend fun revokeAppPermissions(
                 if (groupName == PackagePermissionsLiveData.NON_RUNTIME_NORMAL_PERMS) {
                     continue
                 }
-                if (groupName !in PermissionMapping.getPlatformPermissionGroups()) {
+                if (!PermissionMapping.isPlatformPermissionGroup(groupName)) {
                     continue
                 }
                 val group: LightAppPermGroup =
@@ -40,6 +40,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.permission.AdminPermissionControlParams;
@@ -156,9 +157,21 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
      */
     private @NonNull ArrayList<String> addSplitPermissions(@NonNull List<String> perms,
             int targetSDK) {
-        List<PermissionManager.SplitPermissionInfo> splitPerms =
-                getSystemService(PermissionManager.class).getSplitPermissions();
+        return addSplitPermissions(perms, targetSDK,
+                getSystemService(PermissionManager.class).getSplitPermissions());
+    }
 
+    /**
+     * Expand {@code perms} by the given split permissions for an app with the given targetSDK.
+     *
+     * @param perms The permissions that should be expanded
+     * @param targetSDK The target SDK to expand for
+     * @param splitPerms The split permissions of the platform
+     *
+     * @return The expanded permissions
+     */
+    private static @NonNull ArrayList<String> addSplitPermissions(@NonNull List<String> perms,
+            int targetSDK, @NonNull List<PermissionManager.SplitPermissionInfo> splitPerms) {
         // Add split permissions to the request
         ArrayList<String> expandedPerms = new ArrayList<>(perms);
         int numReqPerms = perms.size();
@@ -195,6 +208,62 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
         }
     }
 
+    /**
+     * Get the package info for a package, only querying the package manager the first time the
+     * package is looked up.
+     *
+     * @param pkg The package name
+     * @param pkgInfos The package infos that were already looked up, by package name
+     *
+     * @return the package info or {@code null} if the package could not be found
+     */
+    private @Nullable PackageInfo getPkgInfo(@NonNull String pkg,
+            @NonNull ArrayMap<String, PackageInfo> pkgInfos) {
+        int index = pkgInfos.indexOfKey(pkg);
+        if (index >= 0) {
+            return pkgInfos.valueAt(index);
+        }
+        PackageInfo pkgInfo = getPkgInfo(pkg);
+        pkgInfos.put(pkg, pkgInfo);
+        return pkgInfo;
+    }
+
+    /**
+     * Whether a package may have any permission revoked by revoking the groups of the given
+     * permissions, i.e. whether it requests any of these permissions and has any permission
+     * granted.
+     *
+     * <p>This is a cheap check done on the {@link PackageInfo}, allowing to skip building the
+     * {@link AppPermissions} of most packages in bulk revocations.
+     *
+     * @param pkgInfo The package info of the app
+     * @param permissions The permissions to revoke
+     *
+     * @return {@code false} iff no permission of the app would be revoked
+     */
+    private static boolean mayRevokeAnyPermission(@NonNull PackageInfo pkgInfo,
+            @NonNull ArrayList<String> permissions) {
+        if (pkgInfo.requestedPermissions == null || pkgInfo.requestedPermissionsFlags == null) {
+            return false;
+        }
+        boolean requestsAnyPermission = false;
+        boolean hasAnyPermissionGranted = false;
+        int numRequestedPerms = pkgInfo.requestedPermissions.length;
+        for (int i = 0; i < numRequestedPerms; i++) {
+            if ((pkgInfo.requestedPermissionsFlags[i]
+                    & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0) {
+                hasAnyPermissionGranted = true;
+            }
+            if (permissions.contains(pkgInfo.requestedPermissions[i])) {
+                requestsAnyPermission = true;
+            }
+            if (requestsAnyPermission && hasAnyPermissionGranted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Given a set of permissions, find all permission groups of an app that can be revoked and that
      * contain any of the permissions.
@@ -296,23 +365,35 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             return Collections.emptyMap();
         }
 
+        long startTimeMillis = SystemClock.elapsedRealtime();
         PackageManager pm = getPackageManager();
 
-        PackageInfo callerPkgInfo = getPkgInfo(callerPackageName);
+        // Packages sharing a UID are looked up once per requested package, look each of them up
+        // only once.
+        ArrayMap<String, PackageInfo> pkgInfos = new ArrayMap<>();
+        PackageInfo callerPkgInfo = getPkgInfo(callerPackageName, pkgInfos);
         if (callerPkgInfo == null) {
             return Collections.emptyMap();
         }
         int callerTargetSdk = callerPkgInfo.applicationInfo.targetSdkVersion;
+        List<PermissionManager.SplitPermissionInfo> splitPerms =
+                getSystemService(PermissionManager.class).getSplitPermissions();
 
         Map<String, List<String>> actuallyRevokedPerms = new ArrayMap<>();
         ArrayList<AppPermissions> appsWithRevokedPerms = new ArrayList<>();
+        int numCheckedApps = 0;
 
         for (Map.Entry<String, List<String>> appRequest : request.entrySet()) {
-            PackageInfo requestedPkgInfo = getPkgInfo(appRequest.getKey());
+            PackageInfo requestedPkgInfo = getPkgInfo(appRequest.getKey(), pkgInfos);
             if (requestedPkgInfo == null) {
                 continue;
             }
 
+            // In rare cases the caller does not know about the permissions that have been added
+            // due to splits. Hence add them now.
+            ArrayList<String> expandedPerms = addSplitPermissions(appRequest.getValue(),
+                    callerTargetSdk, splitPerms);
+
             // Permissions are per UID. Hence permissions will be removed from all apps sharing an
             // UID.
             String[] pkgNames = pm.getPackagesForUid(requestedPkgInfo.applicationInfo.uid);
@@ -324,8 +405,8 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             for (int pkgNum = 0; pkgNum < numPkgNames; pkgNum++) {
                 String pkgName = pkgNames[pkgNum];
 
-                PackageInfo pkgInfo = getPkgInfo(pkgName);
-                if (pkgInfo == null) {
+                PackageInfo pkgInfo = getPkgInfo(pkgName, pkgInfos);
+                if (pkgInfo == null || !mayRevokeAnyPermission(pkgInfo, expandedPerms)) {
                     continue;
                 }
 
@@ -338,12 +419,9 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
                     continue;
                 }
 
-                // In rare cases the caller does not know about the permissions that have been added
-                // due to splits. Hence add them now.
-                ArrayList<String> expandedPerms = addSplitPermissions(appRequest.getValue(),
-                        callerTargetSdk);
-
-                AppPermissions appPerms = new AppPermissions(this, pkgInfo, false, true, null);
+                numCheckedApps++;
+                AppPermissions appPerms = new AppPermissions(this, pkgInfo, false, true, null,
+                        expandedPerms);
 
                 // First find the groups that should be revoked and then revoke all permissions of
                 // these groups. This is needed as soon as a single permission in the group is
@@ -369,6 +447,9 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             }
         }
 
+        Log.i(LOG_TAG, "Revoked permissions of " + actuallyRevokedPerms.size() + " out of "
+                + numCheckedApps + " checked packages (" + request.size() + " requested) in "
+                + (SystemClock.elapsedRealtime() - startTimeMillis) + "ms");
         return actuallyRevokedPerms;
     }
 
@@ -443,8 +524,7 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             for (Pair<String, AppPermGroupUiInfo> groupNameAndUiInfo : groupUiInfos) {
                 String groupName = groupNameAndUiInfo.getFirst();
                 AppPermGroupUiInfo uiInfo = groupNameAndUiInfo.getSecond();
-                boolean isPlatform =
-                        PermissionMapping.getPlatformPermissionGroups().contains(groupName);
+                boolean isPlatform = PermissionMapping.isPlatformPermissionGroup(groupName);
                 CharSequence label = KotlinUtils.INSTANCE.getPermGroupLabel(this, groupName);
 
                 RuntimePermissionPresentationInfo permission =
@@ -473,7 +553,7 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             final PackageInfo packageInfo = getPackageManager().getPackageInfo(packageName,
                     GET_PERMISSIONS);
             final AppPermissions appPermissions = new AppPermissions(this, packageInfo, false,
-                    null);
+                    false, null, Collections.singletonList(permissionName));
 
             final AppPermissionGroup appPermissionGroup = appPermissions.getGroupForPermission(
                     permissionName);
@@ -556,7 +636,8 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
                 Collections.singletonList(unexpandedPermission),
                 callerPkgInfo.applicationInfo.targetSdkVersion);
 
-        AppPermissions app = new AppPermissions(this, pkgInfo, false, true, null);
+        AppPermissions app = new AppPermissions(this, pkgInfo, false, true, null,
+                expandedPermissions);
         AutoGrantPermissionsNotifier autoGrantPermissionsNotifier =
                 new AutoGrantPermissionsNotifier(this, pkgInfo);
 
@@ -674,20 +755,20 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
             throw new RuntimeException(e);
         }
 
-        String[] permissions = packageInfo.requestedPermissions;
-        if (permissions == null) {
+        if (packageInfo.requestedPermissions == null) {
             return;
         }
+        // Build each group of the app once, rather than once per requested permission
+        List<AppPermissionGroup> appGroups = new AppPermissions(deviceContext, packageInfo, false,
+                true, null).getPermissionGroups();
         Set<AppPermissionGroup> groups = new ArraySet<>();
-        for (String permission : permissions) {
-            AppPermissionGroup group = AppPermissionGroup.create(deviceContext, packageInfo,
-                    permission, true);
-            if (group != null) {
-                AppPermissionGroup bgGroup = group.getBackgroundPermissions();
-                boolean isBgGroupOneTime = bgGroup != null && bgGroup.isOneTime();
-                if (group.isOneTime() || isBgGroupOneTime) {
-                    groups.add(group);
-                }
+        int numAppGroups = appGroups.size();
+        for (int i = 0; i < numAppGroups; i++) {
+            AppPermissionGroup group = appGroups.get(i);
+            AppPermissionGroup bgGroup = group.getBackgroundPermissions();
+            boolean isBgGroupOneTime = bgGroup != null && bgGroup.isOneTime();
+            if (group.isOneTime() || isBgGroupOneTime) {
+                groups.add(group);
             }
         }
         long requestId = Utils.getValidSessionId();
@@ -818,7 +899,8 @@ public final class PermissionControllerServiceImpl extends PermissionControllerL
                     + " for package " + packageName);
         }
         Set<AppPermissionGroup> groups = new HashSet<>();
-        AppPermissions app = new AppPermissions(deviceContext, pkgInfo, false, true, null);
+        AppPermissions app = new AppPermissions(deviceContext, pkgInfo, false, true, null,
+                permissions);
         for (String permName : permissions) {
             AppPermissionGroup group = app.getGroupForPermission(permName);
             if (group == null) {
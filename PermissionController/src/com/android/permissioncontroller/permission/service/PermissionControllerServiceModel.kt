@@ -56,6 +56,19 @@ class PermissionControllerServiceModel(private val service: PermissionController
 
     private val observedLiveDatas = mutableListOf<LiveData<*>>()
 
+    /**
+     * The results of [onCountPermissionAppsLiveData], by permission names and flags. Only accessed
+     * on the main thread, and cleared whenever any of the data they were counted from changes.
+     */
+    private val permissionAppsCounts = mutableMapOf<Pair<List<String>, Int>, Int>()
+    /**
+     * Bumped whenever [permissionAppsCounts] is cleared, so that a count started before the clear
+     * is not stored once it completes.
+     */
+    private var permissionAppsCountsGeneration = 0
+    /** The LiveDatas whose changes clear [permissionAppsCounts]. */
+    private val permissionAppsCountsSources = mutableSetOf<LiveData<*>>()
+
     /**
      * *Must* be used instead of LiveData.observe, in order to allow the lifecycle state to be set
      * to "started" correctly. If the liveData was inactive, create a no op observer, which will
@@ -113,8 +126,32 @@ class PermissionControllerServiceModel(private val service: PermissionController
             for (liveData in observedLiveDatas) {
                 liveData.removeObservers(service)
             }
+            for (liveData in permissionAppsCountsSources) {
+                liveData.removeObservers(service)
+            }
 
             observedLiveDatas.clear()
+            permissionAppsCountsSources.clear()
+            permissionAppsCounts.clear()
+            permissionAppsCountsGeneration++
+        }
+    }
+
+    /**
+     * Clears [permissionAppsCounts] whenever the value of the given LiveData changes, until the
+     * observers are removed. Must be called on the main thread.
+     */
+    private fun <T> clearPermissionAppsCountsOnChange(liveData: LiveData<T>) {
+        if (!permissionAppsCountsSources.add(liveData)) {
+            return
+        }
+        var lastValue = liveData.value
+        liveData.observe(service) { value ->
+            if (value != lastValue) {
+                lastValue = value
+                permissionAppsCounts.clear()
+                permissionAppsCountsGeneration++
+            }
         }
     }
 
@@ -131,9 +168,27 @@ class PermissionControllerServiceModel(private val service: PermissionController
         flags: Int,
         callback: IntConsumer
     ) {
-        val packageInfosLiveData = UserPackageInfosLiveData[Process.myUserHandle()]
-        observeAndCheckForLifecycleState(packageInfosLiveData) { packageInfos ->
-            onPackagesLoadedForCountPermissionApps(permissionNames, flags, callback, packageInfos)
+        // Settings queries the count of every permission group at once, and again each time the
+        // permission manager is shown, so counts are kept until the data they come from changes.
+        val countKey = permissionNames.toList() to flags
+        GlobalScope.launch(Main.immediate) {
+            val cachedCount = permissionAppsCounts[countKey]
+            if (cachedCount != null) {
+                callback.accept(cachedCount)
+                return@launch
+            }
+            val generation = permissionAppsCountsGeneration
+            val packageInfosLiveData = UserPackageInfosLiveData[Process.myUserHandle()]
+            observeAndCheckForLifecycleState(packageInfosLiveData) { packageInfos ->
+                clearPermissionAppsCountsOnChange(packageInfosLiveData)
+                onPackagesLoadedForCountPermissionApps(permissionNames, flags, packageInfos) {
+                    count ->
+                    if (generation == permissionAppsCountsGeneration) {
+                        permissionAppsCounts[countKey] = count
+                    }
+                    callback.accept(count)
+                }
+            }
         }
     }
 
@@ -146,14 +201,14 @@ class PermissionControllerServiceModel(private val service: PermissionController
      *
      * @param permissionNames The list of permission names whose apps we want to count
      * @param flags Flags specifying if we want to count system apps, and count only granted apps
-     * @param callback The callback our result will be returned to
      * @param packageInfos The list of LightPackageInfos we want to filter and count
+     * @param callback The callback our result will be returned to
      */
     private fun onPackagesLoadedForCountPermissionApps(
         permissionNames: List<String>,
         flags: Int,
-        callback: IntConsumer,
-        packageInfos: List<LightPackageInfo>?
+        packageInfos: List<LightPackageInfo>?,
+        callback: IntConsumer
     ) {
         if (packageInfos == null) {
             callback.accept(0)
@@ -203,6 +258,12 @@ class PermissionControllerServiceModel(private val service: PermissionController
         var packagesWithPermission = 0
         var numPermAppsChecked = 0
 
+        for (packageUiInfoLiveDatas in uiLiveDatasPerPackage) {
+            for (packageUiInfoLiveData in packageUiInfoLiveDatas) {
+                clearPermissionAppsCountsOnChange(packageUiInfoLiveData)
+            }
+        }
+
         for (packageUiInfoLiveDatas in uiLiveDatasPerPackage) {
             var packageAdded = false
             // We don't need to check for new packages in between the updates of the ui info live
@@ -35,6 +35,7 @@ import android.os.Build
 import android.os.Bundle
 import android.os.PersistableBundle
 import android.os.Process
+import android.os.SystemClock
 import android.os.UserHandle
 import android.os.UserManager
 import android.provider.DeviceConfig
@@ -80,10 +81,15 @@ import java.util.Random
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.Job
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
 import kotlinx.coroutines.yield
 
 /**
@@ -241,6 +247,7 @@ class SafetyLabelChangesJobService : JobService() {
      *    identify that we have missed an update for them.
      */
     private suspend fun recordSafetyLabelsIfMissing() {
+        val startTimeMillis = SystemClock.elapsedRealtime()
         val historyFile = AppsSafetyLabelHistoryPersistence.getSafetyLabelHistoryFile(context)
         val safetyLabelsLastUpdatedTimes: Map<AppInfo, Instant> =
             AppsSafetyLabelHistoryPersistence.getSafetyLabelsLastUpdatedTimes(historyFile)
@@ -249,6 +256,7 @@ class SafetyLabelChangesJobService : JobService() {
         // safety labels feature. The variable name does not specify all these filters for brevity.
         val packagesRequestingLocation: Set<Pair<String, UserHandle>> =
             getAllStoreInstalledPackagesRequestingLocation()
+        val packagesRetrievedTimeMillis = SystemClock.elapsedRealtime()
 
         val safetyLabelsToRecord = mutableSetOf<SafetyLabelForPersistence>()
         val packageNamesWithPersistedSafetyLabels =
@@ -272,46 +280,61 @@ class SafetyLabelChangesJobService : JobService() {
         safetyLabelsToRecord.addAll(
             getSafetyLabelsIfUpdatesMissed(packagesToConsiderUpdate, safetyLabelsLastUpdatedTimes)
         )
+        val safetyLabelsRetrievedTimeMillis = SystemClock.elapsedRealtime()
 
         AppsSafetyLabelHistoryPersistence.recordSafetyLabels(safetyLabelsToRecord, historyFile)
+        val safetyLabelsRecordedTimeMillis = SystemClock.elapsedRealtime()
+        Log.i(
+            LOG_TAG,
+            "Recorded ${safetyLabelsToRecord.size} safety labels for" +
+                " ${packagesRequestingLocation.size} packages; retrieving packages took" +
+                " ${packagesRetrievedTimeMillis - startTimeMillis}ms, retrieving safety labels" +
+                " took ${safetyLabelsRetrievedTimeMillis - packagesRetrievedTimeMillis}ms," +
+                " recording safety labels took" +
+                " ${safetyLabelsRecordedTimeMillis - safetyLabelsRetrievedTimeMillis}ms"
+        )
     }
 
     private suspend fun getSafetyLabels(
         packages: List<Pair<String, UserHandle>>
-    ): List<SafetyLabelForPersistence> {
-        val safetyLabelsToPersist = mutableListOf<SafetyLabelForPersistence>()
-
-        for ((packageName, user) in packages) {
-            yield() // cancellation point
-            val safetyLabelToPersist = getSafetyLabelToPersist(Pair(packageName, user))
-            if (safetyLabelToPersist != null) {
-                safetyLabelsToPersist.add(safetyLabelToPersist)
-            }
-        }
-        return safetyLabelsToPersist
-    }
+    ): List<SafetyLabelForPersistence> =
+        packages.mapNotNullInParallel { packageKey -> getSafetyLabelToPersist(packageKey) }
 
     private suspend fun getSafetyLabelsIfUpdatesMissed(
         packages: List<Pair<String, UserHandle>>,
         safetyLabelsLastUpdatedTimes: Map<AppInfo, Instant>
-    ): List<SafetyLabelForPersistence> {
-        val safetyLabelsToPersist = mutableListOf<SafetyLabelForPersistence>()
-        for ((packageName, user) in packages) {
-            yield() // cancellation point
-
-            // If safety labels are considered up-to-date, continue as there is no need to retrieve
-            // the latest safety label; it was already captured.
-            if (areSafetyLabelsUpToDate(Pair(packageName, user), safetyLabelsLastUpdatedTimes)) {
-                continue
-            }
-
-            val safetyLabelToPersist = getSafetyLabelToPersist(Pair(packageName, user))
-            if (safetyLabelToPersist != null) {
-                safetyLabelsToPersist.add(safetyLabelToPersist)
+    ): List<SafetyLabelForPersistence> =
+        packages.mapNotNullInParallel { packageKey ->
+            // If safety labels are considered up-to-date, there is no need to retrieve the latest
+            // safety label; it was already captured.
+            if (areSafetyLabelsUpToDate(packageKey, safetyLabelsLastUpdatedTimes)) {
+                null
+            } else {
+                getSafetyLabelToPersist(packageKey)
             }
         }
 
-        return safetyLabelsToPersist
+    /**
+     * Applies [transform] to each of the given packages and returns the non-null results, in
+     * order.
+     *
+     * Packages are processed in parallel, as retrieving their safety label mostly waits on
+     * [PackageManager] calls, with at most [MAX_PARALLEL_PACKAGES] of them processed at once.
+     */
+    private suspend fun <R> Collection<Pair<String, UserHandle>>.mapNotNullInParallel(
+        transform: suspend (Pair<String, UserHandle>) -> R?
+    ): List<R> = coroutineScope {
+        val semaphore = Semaphore(MAX_PARALLEL_PACKAGES)
+        map { packageKey ->
+                async(Dispatchers.IO) {
+                    semaphore.withPermit {
+                        yield() // cancellation point
+                        transform(packageKey)
+                    }
+                }
+            }
+            .awaitAll()
+            .filterNotNull()
     }
 
     /**
@@ -421,7 +444,11 @@ class SafetyLabelChangesJobService : JobService() {
     //  preinstalled apps.
     private suspend fun getAllStoreInstalledPackagesRequestingLocation():
         Set<Pair<String, UserHandle>> =
-        getAllPackagesRequestingLocation().filter { isSafetyLabelSupported(it) }.toSet()
+        getAllPackagesRequestingLocation()
+            .mapNotNullInParallel { packageKey ->
+                if (isSafetyLabelSupported(packageKey)) packageKey else null
+            }
+            .toSet()
 
     private suspend fun getAllPackagesRequestingLocation(): Set<Pair<String, UserHandle>> =
         SinglePermGroupPackagesUiInfoLiveData[Manifest.permission_group.LOCATION]
@@ -626,6 +653,9 @@ class SafetyLabelChangesJobService : JobService() {
         private val LOG_TAG = SafetyLabelChangesJobService::class.java.simpleName
         private const val DEBUG = true
 
+        /** The maximum number of packages whose safety label is retrieved at once. */
+        private const val MAX_PARALLEL_PACKAGES = 8
+
         private const val ACTION_SET_UP_SAFETY_LABEL_CHANGES_JOB =
             "com.android.permissioncontroller.action.SET_UP_SAFETY_LABEL_CHANGES_JOB"
         private const val EXTRA_NUMBER_OF_APP_UPDATES =
@@ -222,8 +222,7 @@ class AppPermissionGroupsViewModel(
                     }
 
                 for (groupName in groups) {
-                    val isSystem =
-                        PermissionMapping.getPlatformPermissionGroups().contains(groupName)
+                    val isSystem = PermissionMapping.isPlatformPermissionGroup(groupName)
                     appPermGroupUiInfoLiveDatas[groupName]?.value?.let { uiInfo ->
                         if (SdkLevel.isAtLeastT() && !uiInfo.shouldShow) {
                             return@let
@@ -279,8 +278,7 @@ class AppPermissionGroupsViewModel(
 
                 packagePermsExternalDeviceLiveData.value?.forEach { externalDeviceGrantInfo ->
                     val groupName = externalDeviceGrantInfo.groupName
-                    val isSystem =
-                        PermissionMapping.getPlatformPermissionGroups().contains(groupName)
+                    val isSystem = PermissionMapping.isPlatformPermissionGroup(groupName)
                     val persistentDeviceId = externalDeviceGrantInfo.persistentDeviceId
                     when (externalDeviceGrantInfo.permGrantState) {
                         PermGrantState.PERMS_ALLOWED -> {
@@ -57,6 +57,7 @@ import android.content.res.Resources
 import android.ext.PackageId
 import android.graphics.Bitmap
 import android.graphics.Canvas
+import android.graphics.drawable.BitmapDrawable
 import android.graphics.drawable.Drawable
 import android.graphics.drawable.Icon
 import android.health.connect.HealthConnectManager
@@ -494,13 +495,17 @@ object KotlinUtils {
      * @return The package's icon, or null, if the package does not exist
      */
     fun getBadgedPackageIcon(app: Application, packageName: String, user: UserHandle): Drawable? {
-        return try {
-            val userContext = Utils.getUserContext(app, user)
-            val appInfo = userContext.packageManager.getApplicationInfo(packageName, 0)
-            Utils.getBadgedIcon(app, appInfo)
-        } catch (e: PackageManager.NameNotFoundException) {
-            null
-        }
+        val icon =
+            PackageIconLabelCache.getOrLoadIcon(app, packageName, user) {
+                try {
+                    val userContext = Utils.getUserContext(app, user)
+                    val appInfo = userContext.packageManager.getApplicationInfo(packageName, 0)
+                    Utils.getBadgedIconBitmap(app, appInfo)
+                } catch (e: PackageManager.NameNotFoundException) {
+                    null
+                }
+            }
+        return icon?.let { BitmapDrawable(app.resources, it) }
     }
 
     /**
@@ -536,13 +541,15 @@ object KotlinUtils {
      * @return The package's label
      */
     fun getPackageLabel(app: Application, packageName: String, user: UserHandle): String {
-        return try {
-            val userContext = Utils.getUserContext(app, user)
-            val appInfo = userContext.packageManager.getApplicationInfo(packageName, 0)
-            Utils.getFullAppLabel(appInfo, app)
-        } catch (e: PackageManager.NameNotFoundException) {
-            packageName
-        }
+        return PackageIconLabelCache.getOrLoadLabel(app, packageName, user) {
+            try {
+                val userContext = Utils.getUserContext(app, user)
+                val appInfo = userContext.packageManager.getApplicationInfo(packageName, 0)
+                Utils.getFullAppLabel(appInfo, app)
+            } catch (e: PackageManager.NameNotFoundException) {
+                null
+            }
+        } ?: packageName
     }
 
     fun convertToBitmap(pkgIcon: Drawable): Bitmap {
@@ -811,7 +818,8 @@ object KotlinUtils {
         withoutAppOps: Boolean = false,
         filterPermissions: Collection<String> = group.permissions.keys
     ): LightAppPermGroup {
-        val deviceId = group.deviceId
+        val batch = PermissionChangeBatch(app, group)
+        val context = batch.context
         val newPerms = group.permissions.toMutableMap()
         var shouldKillForAnyPermission = false
         for (permName in filterPermissions) {
@@ -819,39 +827,37 @@ object KotlinUtils {
             val isBackgroundPerm = permName in group.backgroundPermNames
             if (isBackgroundPerm == grantBackground) {
                 val (newPerm, shouldKill) =
-                    grantRuntimePermission(app, perm, group, isOneTime, userFixed, withoutAppOps)
+                    grantRuntimePermission(
+                        app,
+                        batch,
+                        perm,
+                        group,
+                        isOneTime,
+                        userFixed,
+                        withoutAppOps
+                    )
                 newPerms[newPerm.name] = newPerm
                 shouldKillForAnyPermission = shouldKillForAnyPermission || shouldKill
             }
         }
 
-        // Create a new context with the given deviceId so that permission updates will be bound
-        // to the device
-        val context = ContextCompat.createDeviceContext(app.applicationContext, deviceId)
-
         if (!newPerms.isEmpty()) {
-            val user = UserHandle.getUserHandleForUid(group.packageInfo.uid)
             for (groupPerm in group.allPermissions.values) {
-                var permFlags = groupPerm.flags
-                permFlags = permFlags.clearFlag(FLAG_PERMISSION_AUTO_REVOKED)
-                if (groupPerm.flags != permFlags) {
-                    context.packageManager.updatePermissionFlags(
-                        groupPerm.name,
-                        group.packageInfo.packageName,
-                        PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
-                        permFlags,
-                        user
-                    )
-                }
+                // Permissions granted above already had their flags written, start from these so
+                // that they aren't written again, or reverted.
+                val permFlags = batch.getWrittenFlags(groupPerm.name) ?: groupPerm.flags
+                batch.updatePermissionFlags(
+                    groupPerm.name,
+                    groupPerm.flags,
+                    permFlags.clearFlag(FLAG_PERMISSION_AUTO_REVOKED)
+                )
             }
         }
 
         if (shouldKillForAnyPermission) {
-            (app.getSystemService(ActivityManager::class.java) as ActivityManager).killUid(
-                group.packageInfo.uid,
-                KILL_REASON_APP_OP_CHANGE
-            )
+            batch.killUid()
         }
+        batch.logIpcCount("grant")
         val newGroup =
             LightAppPermGroup(
                 group.packageInfo,
@@ -890,6 +896,7 @@ object KotlinUtils {
      * Grants a single runtime permission
      *
      * @param app The current application
+     * @param batch The batch through which the permission changes are applied
      * @param perm The permission which should be granted.
      * @param group An app permission group in which to look for background or foreground
      * @param isOneTime Whether this is a one-time permission grant permissions
@@ -903,6 +910,7 @@ object KotlinUtils {
     @Suppress("MissingPermission")
     private fun grantRuntimePermission(
         app: Application,
+        batch: PermissionChangeBatch,
         perm: LightPermission,
         group: LightAppPermGroup,
         isOneTime: Boolean,
@@ -911,7 +919,6 @@ object KotlinUtils {
     ): Pair<LightPermission, Boolean> {
         val pkgInfo = group.packageInfo
         val user = UserHandle.getUserHandleForUid(pkgInfo.uid)
-        val deviceId = group.deviceId
         val supportsRuntime = pkgInfo.targetSdkVersion >= Build.VERSION_CODES.M
                 || isSpecialRuntimePermission(perm.name)
         val isGrantingAllowed =
@@ -923,14 +930,9 @@ object KotlinUtils {
         }
 
         var newFlags = perm.flags
-        var oldFlags = perm.flags
         var isGranted = perm.isGranted
         var shouldKill = false
 
-        // Create a new context with the given deviceId so that permission updates will be bound
-        // to the device
-        val context = ContextCompat.createDeviceContext(app.applicationContext, deviceId)
-
         // Grant the permission if needed.
         if (!perm.isGranted) {
             val affectsAppOp = permissionToOp(perm.name) != null || perm.isBackgroundPermission
@@ -940,18 +942,15 @@ object KotlinUtils {
                 // If granting without app ops, explicitly disallow app op first, while setting the
                 // flag, so that the PermissionPolicyService doesn't reset the app op state
                 if (affectsAppOp && withoutAppOps) {
-                    oldFlags = oldFlags.setFlag(PackageManager.FLAG_PERMISSION_REVOKED_COMPAT)
-                    context.packageManager.updatePermissionFlags(
+                    batch.updatePermissionFlags(
                         perm.name,
-                        group.packageName,
-                        PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
-                        oldFlags,
-                        user
+                        perm.flags,
+                        perm.flags.setFlag(PackageManager.FLAG_PERMISSION_REVOKED_COMPAT)
                     )
                     // TODO: Update this method once AppOp is device aware
-                    disallowAppOp(app, perm, group)
+                    disallowAppOp(batch, perm, group)
                 }
-                context.packageManager.grantRuntimePermission(group.packageName, perm.name, user)
+                batch.grantRuntimePermission(perm.name)
                 isGranted = true
             } else if (affectsAppOp) {
                 // Legacy apps do not know that they have to retry access to a
@@ -973,7 +972,7 @@ object KotlinUtils {
             // before the permission grant.
             if (affectsAppOp && !withoutAppOps) {
                 // TODO: Update this method once AppOp is device aware
-                allowAppOp(app, perm, group)
+                allowAppOp(batch, perm, group)
             }
         }
 
@@ -1016,15 +1015,7 @@ object KotlinUtils {
             }
         }
 
-        if (oldFlags != newFlags) {
-            context.packageManager.updatePermissionFlags(
-                perm.name,
-                group.packageInfo.packageName,
-                PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
-                newFlags,
-                user
-            )
-        }
+        batch.updatePermissionFlags(perm.name, perm.flags, newFlags)
 
         if (GmsCompat.isEnabledFor(pkgInfo.packageName, user.identifier)) {
             // in many cases, GMS components need a restart to properly handle permission grants
@@ -1120,7 +1111,7 @@ object KotlinUtils {
         forceRemoveRevokedCompat: Boolean = false,
         filterPermissions: Collection<String>
     ): LightAppPermGroup {
-        val deviceId = group.deviceId
+        val batch = PermissionChangeBatch(app, group)
         val wasOneTime = group.isOneTime
         val newPerms = group.permissions.toMutableMap()
         var shouldKillForAnyPermission = false
@@ -1131,6 +1122,7 @@ object KotlinUtils {
                 val (newPerm, shouldKill) =
                     revokeRuntimePermission(
                         app,
+                        batch,
                         perm,
                         userFixed,
                         oneTime,
@@ -1143,11 +1135,9 @@ object KotlinUtils {
         }
 
         if (shouldKillForAnyPermission && !shouldSkipKillForGroup(app, group)) {
-            (app.getSystemService(ActivityManager::class.java) as ActivityManager).killUid(
-                group.packageInfo.uid,
-                KILL_REASON_APP_OP_CHANGE
-            )
+            batch.killUid()
         }
+        batch.logIpcCount("revoke")
 
         val newGroup =
             LightAppPermGroup(
@@ -1159,10 +1149,7 @@ object KotlinUtils {
             )
 
         if (wasOneTime && !anyPermsOfPackageOneTimeGranted(app, newGroup.packageInfo, newGroup)) {
-            // Create a new context with the given deviceId so that permission updates will be bound
-            // to the device
-            val context = ContextCompat.createDeviceContext(app.applicationContext, deviceId)
-            context
+            batch.context
                 .getSystemService(PermissionManager::class.java)!!
                 .stopOneTimePermissionSession(group.packageName)
         }
@@ -1237,6 +1224,7 @@ object KotlinUtils {
      * Revokes a single runtime permission.
      *
      * @param app The current application
+     * @param batch The batch through which the permission changes are applied
      * @param perm The permission which should be revoked.
      * @param userFixed If the user requested that they do not want to be asked again
      * @param group An optional app permission group in which to look for background or foreground
@@ -1247,6 +1235,7 @@ object KotlinUtils {
     @Suppress("MissingPermission")
     private fun revokeRuntimePermission(
         app: Application,
+        batch: PermissionChangeBatch,
         perm: LightPermission,
         userFixed: Boolean,
         oneTime: Boolean,
@@ -1260,7 +1249,6 @@ object KotlinUtils {
 
         val user = UserHandle.getUserHandleForUid(group.packageInfo.uid)
         var newFlags = perm.flags
-        val deviceId = group.deviceId
         var isGranted = perm.isGranted
         val supportsRuntime = group.packageInfo.targetSdkVersion >= Build.VERSION_CODES.M
                 || isSpecialRuntimePermission(perm.name)
@@ -1268,10 +1256,6 @@ object KotlinUtils {
 
         val affectsAppOp = permissionToOp(perm.name) != null || perm.isBackgroundPermission
 
-        // Create a new context with the given deviceId so that permission updates will be bound
-        // to the device
-        val context = ContextCompat.createDeviceContext(app.applicationContext, deviceId)
-
         if (perm.isGranted || (perm.isCompatRevoked && forceRemoveRevokedCompat)) {
             if (
                 supportsRuntime &&
@@ -1282,11 +1266,7 @@ object KotlinUtils {
                     )
             ) {
                 // Revoke the permission if needed.
-                context.packageManager.revokeRuntimePermission(
-                    group.packageInfo.packageName,
-                    perm.name,
-                    user
-                )
+                batch.revokeRuntimePermission(perm.name)
                 isGranted = false
                 if (forceRemoveRevokedCompat) {
                     newFlags = newFlags.clearFlag(PackageManager.FLAG_PERMISSION_REVOKED_COMPAT)
@@ -1306,7 +1286,7 @@ object KotlinUtils {
             newFlags = newFlags.clearFlag(PackageManager.FLAG_PERMISSION_REVOKE_WHEN_REQUESTED)
             if (affectsAppOp) {
                 // TODO: Update this method once AppOp is device aware
-                disallowAppOp(app, perm, group)
+                disallowAppOp(batch, perm, group)
             }
         }
 
@@ -1324,15 +1304,7 @@ object KotlinUtils {
         newFlags = newFlags.clearFlag(PackageManager.FLAG_PERMISSION_AUTO_REVOKED)
         newFlags = newFlags.clearFlag(PackageManager.FLAG_PERMISSION_REVIEW_REQUIRED)
 
-        if (perm.flags != newFlags) {
-            context.packageManager.updatePermissionFlags(
-                perm.name,
-                group.packageInfo.packageName,
-                PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
-                newFlags,
-                user
-            )
-        }
+        batch.updatePermissionFlags(perm.name, perm.flags, newFlags)
 
         // If we revoke background access to the fine location, we trigger a check to remove
         // notification warning about background location access
@@ -1382,20 +1354,17 @@ object KotlinUtils {
      * background permission:</dt> <dd>All granted foreground permissions for this background
      * permission will be set to {@link AppOpsManager#MODE_ALLOWED}</dd> </dl>
      *
-     * @param app The current application
+     * @param batch The batch through which the app op changes are applied
      * @param perm The LightPermission whose app op should be allowed
      * @param group The LightAppPermGroup which will be looked in for foreground or background
      *   LightPermission objects
      * @return {@code true} iff app-op was changed
      */
     private fun allowAppOp(
-        app: Application,
+        batch: PermissionChangeBatch,
         perm: LightPermission,
         group: LightAppPermGroup
     ): Boolean {
-        val packageName = group.packageInfo.packageName
-        val uid = group.packageInfo.uid
-        val appOpsManager = app.getSystemService(AppOpsManager::class.java) as AppOpsManager
         var wasChanged = false
 
         if (perm.isBackgroundPermission && perm.foregroundPerms != null) {
@@ -1404,9 +1373,7 @@ object KotlinUtils {
                 val appOpName = permissionToOp(foregroundPermName) ?: continue
 
                 if (fgPerm != null && fgPerm.isGranted) {
-                    wasChanged =
-                        setOpMode(appOpName, uid, packageName, MODE_ALLOWED, appOpsManager) ||
-                            wasChanged
+                    wasChanged = batch.setOpMode(appOpName, MODE_ALLOWED) || wasChanged
                 }
             }
         } else {
@@ -1419,16 +1386,16 @@ object KotlinUtils {
                             if (bgPerm != null && bgPerm.isGranted) MODE_ALLOWED
                             else MODE_FOREGROUND
 
-                        setOpMode(appOpName, uid, packageName, mode, appOpsManager)
+                        batch.setOpMode(appOpName, mode)
                     } else {
                         // The app requested a permission that has a background permission but it
                         // did
                         // not request the background permission, hence it can never get background
                         // access
-                        setOpMode(appOpName, uid, packageName, MODE_FOREGROUND, appOpsManager)
+                        batch.setOpMode(appOpName, MODE_FOREGROUND)
                     }
             } else {
-                wasChanged = setOpMode(appOpName, uid, packageName, MODE_ALLOWED, appOpsManager)
+                wasChanged = batch.setOpMode(appOpName, MODE_ALLOWED)
             }
         }
         return wasChanged
@@ -1444,20 +1411,17 @@ object KotlinUtils {
      * permission is a background permission:</dt> <dd>All granted foreground permissions for this
      * background permission will be set to {@link AppOpsManager#MODE_FOREGROUND}</dd> </dl>
      *
-     * @param app The current application
+     * @param batch The batch through which the app op changes are applied
      * @param perm The LightPermission whose app op should be allowed
      * @param group The LightAppPermGroup which will be looked in for foreground or background
      *   LightPermission objects
      * @return {@code true} iff app-op was changed
      */
     private fun disallowAppOp(
-        app: Application,
+        batch: PermissionChangeBatch,
         perm: LightPermission,
         group: LightAppPermGroup
     ): Boolean {
-        val packageName = group.packageInfo.packageName
-        val uid = group.packageInfo.uid
-        val appOpsManager = app.getSystemService(AppOpsManager::class.java) as AppOpsManager
         var wasChanged = false
 
         if (perm.isBackgroundPermission && perm.foregroundPerms != null) {
@@ -1465,41 +1429,119 @@ object KotlinUtils {
                 val fgPerm = group.permissions[foregroundPermName]
                 if (fgPerm != null && fgPerm.isGranted) {
                     val appOpName = permissionToOp(foregroundPermName) ?: return false
-                    wasChanged =
-                        wasChanged ||
-                            setOpMode(appOpName, uid, packageName, MODE_FOREGROUND, appOpsManager)
+                    wasChanged = wasChanged || batch.setOpMode(appOpName, MODE_FOREGROUND)
                 }
             }
         } else {
             val appOpName = permissionToOp(perm.name) ?: return false
-            wasChanged = setOpMode(appOpName, uid, packageName, MODE_IGNORED, appOpsManager)
+            wasChanged = batch.setOpMode(appOpName, MODE_IGNORED)
         }
         return wasChanged
     }
 
     /**
-     * Set mode of an app-op if needed.
+     * The binder calls applying the permission changes of a single grant or revoke of a
+     * [LightAppPermGroup].
      *
-     * @param op The op to set
-     * @param uid The uid the app-op belongs to
-     * @param packageName The package the app-op belongs to
-     * @param mode The new mode
-     * @param manager The app ops manager to use to change the app op
-     * @return {@code true} iff app-op was changed
+     * The permission flags are remembered as they are written, so that writes which wouldn't
+     * change anything (e.g. clearing flags on the whole group after some of its permissions were
+     * updated) don't issue another binder call. App op modes are read before each write, as the
+     * system can resync them after any permission change, and only a repeated write of the same
+     * mode with no permission change in between is skipped. Changes are still applied in the
+     * order they are made, as some of them rely on it.
      */
-    private fun setOpMode(
-        op: String,
-        uid: Int,
-        packageName: String,
-        mode: Int,
-        manager: AppOpsManager
-    ): Boolean {
-        val currentMode = manager.unsafeCheckOpRaw(op, uid, packageName)
-        if (currentMode == mode) {
-            return false
+    private class PermissionChangeBatch(private val app: Application, group: LightAppPermGroup) {
+        // Create a new context with the given deviceId so that permission updates will be bound
+        // to the device
+        val context: Context =
+            ContextCompat.createDeviceContext(app.applicationContext, group.deviceId)
+        private val appOpsManager = app.getSystemService(AppOpsManager::class.java) as AppOpsManager
+        private val packageName = group.packageInfo.packageName
+        private val permGroupName = group.permGroupName
+        private val uid = group.packageInfo.uid
+        private val user = UserHandle.getUserHandleForUid(uid)
+        private val writtenFlags = mutableMapOf<String, Int>()
+        /** The app op last set through this batch, if no permission changed since. */
+        private var lastOpMode: Pair<String, Int>? = null
+
+        /** The number of binder calls issued through this batch so far. */
+        var ipcCount = 0
+            private set
+
+        fun grantRuntimePermission(permName: String) {
+            context.packageManager.grantRuntimePermission(packageName, permName, user)
+            lastOpMode = null
+            ipcCount++
+        }
+
+        fun revokeRuntimePermission(permName: String) {
+            context.packageManager.revokeRuntimePermission(packageName, permName, user)
+            lastOpMode = null
+            ipcCount++
+        }
+
+        /** Returns the flags last written for the given permission in this batch, if any. */
+        fun getWrittenFlags(permName: String): Int? = writtenFlags[permName]
+
+        /**
+         * Update the flags of a permission if needed.
+         *
+         * @param permName The name of the permission
+         * @param oldFlags The flags of the permission before this batch
+         * @param newFlags The new flags of the permission
+         * @return {@code true} iff the flags were changed
+         */
+        fun updatePermissionFlags(permName: String, oldFlags: Int, newFlags: Int): Boolean {
+            val currentFlags = writtenFlags[permName] ?: oldFlags
+            if (currentFlags == newFlags) {
+                return false
+            }
+            context.packageManager.updatePermissionFlags(
+                permName,
+                packageName,
+                PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
+                newFlags,
+                user
+            )
+            writtenFlags[permName] = newFlags
+            lastOpMode = null
+            ipcCount++
+            return true
+        }
+
+        /**
+         * Set mode of an app-op if needed.
+         *
+         * @param op The op to set
+         * @param mode The new mode
+         * @return {@code true} iff app-op was changed
+         */
+        fun setOpMode(op: String, mode: Int): Boolean {
+            if (lastOpMode == op to mode) {
+                return false
+            }
+            val currentMode = appOpsManager.unsafeCheckOpRaw(op, uid, packageName)
+            ipcCount++
+            if (currentMode == mode) {
+                return false
+            }
+            @Suppress("MissingPermission") appOpsManager.setUidMode(op, uid, mode)
+            lastOpMode = op to mode
+            ipcCount++
+            return true
+        }
+
+        fun killUid() {
+            (app.getSystemService(ActivityManager::class.java) as ActivityManager).killUid(
+                uid,
+                KILL_REASON_APP_OP_CHANGE
+            )
+            ipcCount++
+        }
+
+        fun logIpcCount(change: String) {
+            Log.v(LOG_TAG, "Applied $change of $permGroupName for $packageName in $ipcCount IPCs")
         }
-        @Suppress("MissingPermission") manager.setUidMode(op, uid, mode)
-        return true
     }
 
     private fun shouldSkipKillForGroup(app: Application, group: LightAppPermGroup): Boolean {
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.permissioncontroller.permission.utils
+
+import android.app.Application
+import android.content.ComponentCallbacks2
+import android.content.pm.ActivityInfo
+import android.content.res.Configuration
+import android.graphics.Bitmap
+import android.os.UserHandle
+import android.util.LruCache
+import com.android.permissioncontroller.permission.data.PackageBroadcastReceiver
+import com.android.permissioncontroller.permission.data.PackageBroadcastReceiver.PackageBroadcastListener
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.Dispatchers.Main
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.launch
+
+/**
+ * Process-wide cache of the badged icons and labels of packages.
+ *
+ * Loading them requires an IPC to look up the application info, and rendering the icon through
+ * the icon factory, which is wasteful to do every time a row of an app list is bound. Entries are
+ * invalidated through [PackageBroadcastReceiver] whenever a package is added, changed or removed,
+ * and all of them are dropped when the locale, density or night mode changes.
+ *
+ * The cache only listens to package broadcasts while it may hold entries: it is emptied and stops
+ * listening once the UI of the app is hidden, and starts again on the next load.
+ */
+object PackageIconLabelCache : PackageBroadcastListener, ComponentCallbacks2 {
+    private const val MAX_ICONS_SIZE_BYTES = 8 * 1024 * 1024
+    private const val MAX_LABELS = 512
+    private const val INVALIDATING_CONFIG_CHANGES =
+        ActivityInfo.CONFIG_LOCALE or ActivityInfo.CONFIG_DENSITY or ActivityInfo.CONFIG_UI_MODE
+
+    private val icons =
+        object : LruCache<PackageKey, Bitmap>(MAX_ICONS_SIZE_BYTES) {
+            override fun sizeOf(key: PackageKey, value: Bitmap): Int = value.allocationByteCount
+        }
+    private val labels = LruCache<PackageKey, String>(MAX_LABELS)
+    /** Incremented on every invalidation, so that values loaded concurrently aren't cached. */
+    private val invalidationCount = AtomicInteger()
+    /** The application the callbacks are registered with, or `null` if they aren't registered. */
+    private var registeredApp: Application? = null
+    /** Incremented on every registration and unregistration of the callbacks. */
+    private var registrationCount = 0
+    /**
+     * Whether package broadcasts are being received. Nothing is cached until they are, as a
+     * package update could otherwise be missed.
+     */
+    @Volatile private var isListening = false
+    /** The configuration entries were last loaded with, while the callbacks are registered. */
+    private var lastConfiguration: Configuration? = null
+
+    /**
+     * Returns the cached badged icon of the given package, or loads it with [loadIcon] if it isn't
+     * cached yet. Packages whose icon can't be loaded (e.g. because they aren't installed) aren't
+     * cached.
+     */
+    fun getOrLoadIcon(
+        app: Application,
+        packageName: String,
+        user: UserHandle,
+        loadIcon: () -> Bitmap?
+    ): Bitmap? {
+        registerIfNeeded(app)
+        val key = PackageKey(packageName, user.identifier)
+        icons.get(key)?.let {
+            return it
+        }
+        val canCache = isListening
+        val invalidationCountBeforeLoad = invalidationCount.get()
+        return loadIcon()?.also {
+            if (canCache && invalidationCount.get() == invalidationCountBeforeLoad) {
+                icons.put(key, it)
+            }
+        }
+    }
+
+    /**
+     * Returns the cached label of the given package, or loads it with [loadLabel] if it isn't
+     * cached yet. Packages whose label can't be loaded aren't cached.
+     */
+    fun getOrLoadLabel(
+        app: Application,
+        packageName: String,
+        user: UserHandle,
+        loadLabel: () -> String?
+    ): String? {
+        registerIfNeeded(app)
+        val key = PackageKey(packageName, user.identifier)
+        labels.get(key)?.let {
+            return it
+        }
+        val canCache = isListening
+        val invalidationCountBeforeLoad = invalidationCount.get()
+        return loadLabel()?.also {
+            if (canCache && invalidationCount.get() == invalidationCountBeforeLoad) {
+                labels.put(key, it)
+            }
+        }
+    }
+
+    /** Invalidates the icon and label of the given package, for all users. */
+    fun invalidatePackage(packageName: String) {
+        invalidationCount.incrementAndGet()
+        for (key in icons.snapshot().keys) {
+            if (key.packageName == packageName) {
+                icons.remove(key)
+            }
+        }
+        for (key in labels.snapshot().keys) {
+            if (key.packageName == packageName) {
+                labels.remove(key)
+            }
+        }
+    }
+
+    /** Invalidates the icons and labels of all packages. */
+    fun invalidateAll() {
+        invalidationCount.incrementAndGet()
+        icons.evictAll()
+        labels.evictAll()
+    }
+
+    override fun onPackageUpdate(packageName: String) {
+        invalidatePackage(packageName)
+    }
+
+    @Synchronized
+    override fun onConfigurationChanged(newConfig: Configuration) {
+        val configChanges = lastConfiguration?.diff(newConfig) ?: 0
+        lastConfiguration = Configuration(newConfig)
+        // Rotations, resizes and the like don't affect icons or labels.
+        if (configChanges and INVALIDATING_CONFIG_CHANGES != 0) {
+            invalidateAll()
+        }
+    }
+
+    override fun onTrimMemory(level: Int) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            unregister()
+        }
+    }
+
+    override fun onLowMemory() {
+        unregister()
+    }
+
+    @Synchronized
+    private fun registerIfNeeded(app: Application) {
+        if (registeredApp != null) {
+            return
+        }
+        registeredApp = app
+        val registration = ++registrationCount
+        lastConfiguration = Configuration(app.resources.configuration)
+        app.registerComponentCallbacks(this)
+        // The receiver is only registered on the main thread, so only start caching once it is.
+        GlobalScope.launch(Main.immediate) {
+            PackageBroadcastReceiver.addAllCallback(this@PackageIconLabelCache)
+            synchronized(this@PackageIconLabelCache) {
+                if (registrationCount == registration) {
+                    isListening = true
+                }
+            }
+        }
+    }
+
+    /** Empties the cache and stops listening to changes, until the next load. */
+    @Synchronized
+    private fun unregister() {
+        val app = registeredApp ?: return
+        registeredApp = null
+        registrationCount++
+        isListening = false
+        lastConfiguration = null
+        PackageBroadcastReceiver.removeAllCallback(this)
+        app.unregisterComponentCallbacks(this)
+        invalidateAll()
+    }
+
+    private data class PackageKey(val packageName: String, val userId: Int)
+}
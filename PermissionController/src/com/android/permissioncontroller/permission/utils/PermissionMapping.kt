@@ -27,6 +27,8 @@ import android.util.Log
 import com.android.modules.utils.build.SdkLevel
 import com.android.permission.safetylabel.DataCategoryConstants
 import com.android.permissioncontroller.permission.model.livedatatypes.LightAppPermGroup
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * This file contains the canonical mapping of permission to permission group, used in the
@@ -73,6 +75,20 @@ object PermissionMapping {
 
     private val HEALTH_PERMISSIONS_SET: MutableSet<String> = mutableSetOf()
 
+    /**
+     * Cache of the results of [getPlatformPermissionGroupForOp], as resolving the permission of an
+     * op is done for every op of every package when computing permission usages. Ops without a
+     * platform permission group are mapped to [NO_PLATFORM_PERMISSION_GROUP].
+     */
+    private val OP_TO_PLATFORM_PERMISSION_GROUP = ConcurrentHashMap<String, String>()
+    private const val NO_PLATFORM_PERMISSION_GROUP = ""
+
+    /** Cached result of [getPlatformPermissionGroups], reset when the platform groups change. */
+    @Volatile private var platformPermissionGroupNames: List<String>? = null
+
+    /** Cached result of [getRuntimePlatformPermissionNames], reset when the permissions change. */
+    @Volatile private var runtimePlatformPermissionNames: List<String>? = null
+
     init {
         PLATFORM_PERMISSIONS[Manifest.permission.READ_CONTACTS] = Manifest.permission_group.CONTACTS
         PLATFORM_PERMISSIONS[Manifest.permission.WRITE_CONTACTS] =
@@ -288,7 +304,10 @@ object PermissionMapping {
      */
     @JvmStatic
     fun getPlatformPermissionGroups(): List<String> {
-        return PLATFORM_PERMISSION_GROUPS.keys.toList()
+        return platformPermissionGroupNames
+            ?: Collections.unmodifiableList(PLATFORM_PERMISSION_GROUPS.keys.toList()).also {
+                platformPermissionGroupNames = it
+            }
     }
 
     /**
@@ -298,7 +317,10 @@ object PermissionMapping {
      */
     @JvmStatic
     fun getRuntimePlatformPermissionNames(): List<String> {
-        return PLATFORM_PERMISSIONS.keys.toList()
+        return runtimePlatformPermissionNames
+            ?: Collections.unmodifiableList(PLATFORM_PERMISSIONS.keys.toList()).also {
+                runtimePlatformPermissionNames = it
+            }
     }
 
     /**
@@ -337,6 +359,9 @@ object PermissionMapping {
             PLATFORM_PERMISSION_GROUPS[HEALTH_PERMISSION_GROUP]?.add(permission)
             HEALTH_PERMISSIONS_SET.add(permission)
         }
+        platformPermissionGroupNames = null
+        runtimePlatformPermissionNames = null
+        OP_TO_PLATFORM_PERMISSION_GROUP.clear()
     }
 
     /**
@@ -371,6 +396,14 @@ object PermissionMapping {
      * Returns the platform permission group for the permission that the provided op backs, if any.
      */
     fun getPlatformPermissionGroupForOp(opName: String): String? {
+        val permissionGroup =
+            OP_TO_PLATFORM_PERMISSION_GROUP.getOrPut(opName) {
+                computePlatformPermissionGroupForOp(opName) ?: NO_PLATFORM_PERMISSION_GROUP
+            }
+        return if (permissionGroup == NO_PLATFORM_PERMISSION_GROUP) null else permissionGroup
+    }
+
+    private fun computePlatformPermissionGroupForOp(opName: String): String? {
         // The OPSTR_READ_WRITE_HEALTH_DATA is a special case as unlike other ops, it does not
         // map to a single permission. However it is safe to retrieve a permission group for it,
         // as all permissions it maps to, map to the same permission group
@@ -988,11 +988,23 @@ public final class Utils {
      */
     public static @NonNull Drawable getBadgedIcon(@NonNull Context context,
             @NonNull ApplicationInfo appInfo) {
+        return new BitmapDrawable(context.getResources(), getBadgedIconBitmap(context, appInfo));
+    }
+
+    /**
+     * Get the badged icon bitmap of an application.
+     *
+     * @param context The context to use
+     * @param appInfo The application info of the application
+     *
+     * @return the badged icon bitmap of the application
+     */
+    public static @NonNull Bitmap getBadgedIconBitmap(@NonNull Context context,
+            @NonNull ApplicationInfo appInfo) {
         UserHandle user = UserHandle.getUserHandleForUid(appInfo.uid);
         try (IconFactory iconFactory = IconFactory.obtain(context)) {
-            Bitmap iconBmp = iconFactory.createBadgedIconBitmap(
+            return iconFactory.createBadgedIconBitmap(
                     appInfo.loadUnbadgedIcon(context.getPackageManager()), user, false).icon;
-            return new BitmapDrawable(context.getResources(), iconBmp);
         }
     }
 
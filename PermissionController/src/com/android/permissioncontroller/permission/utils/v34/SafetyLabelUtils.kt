@@ -42,7 +42,7 @@ object SafetyLabelUtils {
         val categoriesForPermission =
             PermissionMapping.getDataCategoriesForPermissionGroup(groupName)
         categoriesForPermission.forEach categoryLoop@{ category ->
-            val dataCategory: DataCategory? = safetyLabel.dataLabel.dataShared[category]
+            val dataCategory: DataCategory? = safetyLabel.dataLabel.getDataSharedCategory(category)
             if (dataCategory == null) {
                 // Continue to next
                 return@categoryLoop
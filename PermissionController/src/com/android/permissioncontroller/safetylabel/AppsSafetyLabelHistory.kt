@@ -111,11 +111,14 @@ data class AppsSafetyLabelHistory(val appSafetyLabelHistories: List<AppSafetyLab
                 appMetadataDataLabel: AppMetadataDataLabel
             ): DataLabel =
                 DataLabel(
-                    appMetadataDataLabel.dataShared
-                        .filter { it.key == DataCategoryConstants.CATEGORY_LOCATION }
-                        .mapValues { categoryEntry ->
-                            DataCategory.fromAppMetadataDataCategory(categoryEntry.value)
-                        }
+                    appMetadataDataLabel
+                        .getDataSharedCategory(DataCategoryConstants.CATEGORY_LOCATION)
+                        ?.let {
+                            mapOf(
+                                DataCategoryConstants.CATEGORY_LOCATION to
+                                    DataCategory.fromAppMetadataDataCategory(it)
+                            )
+                        } ?: emptyMap()
                 )
         }
     }
@@ -65,6 +65,12 @@ object AppsSafetyLabelHistoryPersistence {
 
     private var listeners = mutableSetOf<ChangeListener>()
 
+    /**
+     * The content last read from or written to each history file, so that the file doesn't have to
+     * be parsed again every time a safety label is recorded or looked up.
+     */
+    private val cachedFileContents = mutableMapOf<File, CachedFileContent>()
+
     /** Adds a listener to listen for changes to persisted safety labels. */
     fun addListener(listener: ChangeListener) {
         synchronized(readWriteLock) { listeners.add(listener) }
@@ -106,18 +112,7 @@ object AppsSafetyLabelHistoryPersistence {
     /** Returns the last updated time for each stored [AppSafetyLabelHistory]. */
     fun getSafetyLabelsLastUpdatedTimes(file: File): Map<AppInfo, Instant> {
         synchronized(readWriteLock) {
-            val appHistories =
-                read(file).appsSafetyLabelHistory?.appSafetyLabelHistories ?: return emptyMap()
-
-            val lastUpdatedTimes = mutableMapOf<AppInfo, Instant>()
-            for (appHistory in appHistories) {
-                val lastSafetyLabelReceiptTime: Instant? = appHistory.getLastReceiptTime()
-                if (lastSafetyLabelReceiptTime != null) {
-                    lastUpdatedTimes[appHistory.appInfo] = lastSafetyLabelReceiptTime
-                }
-            }
-
-            return lastUpdatedTimes
+            return readCached(file).lastUpdatedTimes
         }
     }
 
@@ -127,8 +122,9 @@ object AppsSafetyLabelHistoryPersistence {
      */
     fun recordSafetyLabel(safetyLabel: SafetyLabel, file: File) {
         synchronized(readWriteLock) {
+            val storedAppsSafetyLabelHistory = readCached(file).fileContent.appsSafetyLabelHistory
             val currentAppsSafetyLabelHistory =
-                read(file).appsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
+                storedAppsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
             val appInfo = safetyLabel.appInfo
             val currentHistories = currentAppsSafetyLabelHistory.appSafetyLabelHistories
 
@@ -148,7 +144,7 @@ object AppsSafetyLabelHistoryPersistence {
                     )
                 }
 
-            write(file, updatedAppsSafetyLabelHistory)
+            writeIfChanged(file, storedAppsSafetyLabelHistory, updatedAppsSafetyLabelHistory)
         }
     }
 
@@ -160,8 +156,9 @@ object AppsSafetyLabelHistoryPersistence {
         if (safetyLabelsToAdd.isEmpty()) return
 
         synchronized(readWriteLock) {
+            val storedAppsSafetyLabelHistory = readCached(file).fileContent.appsSafetyLabelHistory
             val currentAppsSafetyLabelHistory =
-                read(file).appsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
+                storedAppsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
             val appInfoToOrderedSafetyLabels =
                 safetyLabelsToAdd
                     .groupBy { it.appInfo }
@@ -194,7 +191,11 @@ object AppsSafetyLabelHistoryPersistence {
                     }
                 }
 
-            write(file, AppsSafetyLabelHistory(updatedAppHistories))
+            writeIfChanged(
+                file,
+                storedAppsSafetyLabelHistory,
+                AppsSafetyLabelHistory(updatedAppHistories)
+            )
         }
     }
 
@@ -203,14 +204,19 @@ object AppsSafetyLabelHistoryPersistence {
         if (appInfosToRemove.isEmpty()) return
 
         synchronized(readWriteLock) {
+            val storedAppsSafetyLabelHistory = readCached(file).fileContent.appsSafetyLabelHistory
             val currentAppsSafetyLabelHistory =
-                read(file).appsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
+                storedAppsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
             val historiesWithAppsRemoved =
                 currentAppsSafetyLabelHistory.appSafetyLabelHistories.filter {
                     it.appInfo !in appInfosToRemove
                 }
 
-            write(file, AppsSafetyLabelHistory(historiesWithAppsRemoved))
+            writeIfChanged(
+                file,
+                storedAppsSafetyLabelHistory,
+                AppsSafetyLabelHistory(historiesWithAppsRemoved)
+            )
         }
     }
 
@@ -220,8 +226,9 @@ object AppsSafetyLabelHistoryPersistence {
      */
     fun deleteSafetyLabelsOlderThan(startTime: Instant, file: File) {
         synchronized(readWriteLock) {
+            val storedAppsSafetyLabelHistory = readCached(file).fileContent.appsSafetyLabelHistory
             val currentAppsSafetyLabelHistory =
-                read(file).appsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
+                storedAppsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
             val updatedAppHistories =
                 currentAppsSafetyLabelHistory.appSafetyLabelHistories.map { appHistory ->
                     val history = appHistory.safetyLabelHistory
@@ -243,7 +250,11 @@ object AppsSafetyLabelHistoryPersistence {
                     }
                 }
 
-            write(file, AppsSafetyLabelHistory(updatedAppHistories))
+            writeIfChanged(
+                file,
+                storedAppsSafetyLabelHistory,
+                AppsSafetyLabelHistory(updatedAppHistories)
+            )
         }
     }
 
@@ -270,6 +281,9 @@ object AppsSafetyLabelHistoryPersistence {
             serializer.serializeAllAppSafetyLabelHistory(fileContent)
             serializer.endDocument()
             atomicFile.finishWrite(outputStream)
+            synchronized(readWriteLock) {
+                cachedFileContents[file] = CachedFileContent(file, fileContent)
+            }
             listeners.forEach { it.onSafetyLabelHistoryChanged() }
         } catch (e: Exception) {
             Log.i(
@@ -278,6 +292,7 @@ object AppsSafetyLabelHistoryPersistence {
                 e
             )
             atomicFile.failWrite(outputStream)
+            synchronized(readWriteLock) { cachedFileContents.remove(file) }
         } finally {
             try {
                 outputStream?.close()
@@ -290,7 +305,8 @@ object AppsSafetyLabelHistoryPersistence {
     /** Reads the provided history file and returns all safety label changes since [startTime]. */
     fun getAppSafetyLabelDiffs(startTime: Instant, file: File): List<AppSafetyLabelDiff> {
         val currentAppsSafetyLabelHistory =
-            read(file).appsSafetyLabelHistory ?: AppsSafetyLabelHistory(listOf())
+            synchronized(readWriteLock) { readCached(file).fileContent.appsSafetyLabelHistory }
+                ?: AppsSafetyLabelHistory(listOf())
 
         return currentAppsSafetyLabelHistory.appSafetyLabelHistories.mapNotNull {
             val before = it.getSafetyLabelAt(startTime)
@@ -308,16 +324,83 @@ object AppsSafetyLabelHistoryPersistence {
 
     /** Clears the file. */
     fun clear(file: File) {
-        AtomicFile(file).delete()
+        synchronized(readWriteLock) {
+            AtomicFile(file).delete()
+            cachedFileContents.remove(file)
+        }
     }
 
     /** Returns the file persisting safety label history for installed apps. */
     fun getSafetyLabelHistoryFile(context: Context): File =
         File(context.filesDir, APPS_SAFETY_LABEL_HISTORY_PERSISTENCE_FILE_NAME)
 
+    /**
+     * Returns the content of the provided file, only parsing it if it has changed since it was last
+     * read or written.
+     *
+     * Must be called while holding [readWriteLock].
+     */
+    private fun readCached(file: File): CachedFileContent {
+        val cachedFileContent = cachedFileContents[file]
+        if (cachedFileContent != null && cachedFileContent.isUpToDate(file)) {
+            return cachedFileContent
+        }
+        return CachedFileContent(file, read(file)).also { cachedFileContents[file] = it }
+    }
+
+    /**
+     * Writes the updated [AppsSafetyLabelHistory] to the provided file, unless it is identical to
+     * the one already stored.
+     */
+    private fun writeIfChanged(
+        file: File,
+        storedAppsSafetyLabelHistory: AppsSafetyLabelHistory?,
+        updatedAppsSafetyLabelHistory: AppsSafetyLabelHistory
+    ) {
+        if (storedAppsSafetyLabelHistory == updatedAppsSafetyLabelHistory) {
+            return
+        }
+        write(file, updatedAppsSafetyLabelHistory)
+    }
+
     private fun AppSafetyLabelHistory.getLastReceiptTime(): Instant? =
         this.safetyLabelHistory.lastOrNull()?.receivedAt
 
+    /**
+     * The [AppsSafetyLabelHistoryFileContent] of a file along with the file attributes it was read
+     * at, used to detect changes made to the file outside of this class (e.g. the file being
+     * deleted).
+     */
+    private class CachedFileContent(
+        file: File,
+        val fileContent: AppsSafetyLabelHistoryFileContent
+    ) {
+        private val fileExists = file.exists()
+        private val fileLastModified = file.lastModified()
+        private val fileLength = file.length()
+
+        /** The last updated time for each stored [AppSafetyLabelHistory]. */
+        val lastUpdatedTimes: Map<AppInfo, Instant> by lazy {
+            val appHistories =
+                fileContent.appsSafetyLabelHistory?.appSafetyLabelHistories
+                    ?: return@lazy emptyMap()
+
+            val lastUpdatedTimes = mutableMapOf<AppInfo, Instant>()
+            for (appHistory in appHistories) {
+                val lastSafetyLabelReceiptTime: Instant? = appHistory.getLastReceiptTime()
+                if (lastSafetyLabelReceiptTime != null) {
+                    lastUpdatedTimes[appHistory.appInfo] = lastSafetyLabelReceiptTime
+                }
+            }
+            lastUpdatedTimes
+        }
+
+        fun isUpToDate(file: File): Boolean =
+            file.exists() == fileExists &&
+                file.lastModified() == fileLastModified &&
+                file.length() == fileLength
+    }
+
     private fun XmlPullParser.parseHistoryFile(): AppsSafetyLabelHistoryFileContent {
         if (eventType != XmlPullParser.START_DOCUMENT) {
             throw IllegalArgumentException()
@@ -76,4 +76,24 @@ class PermissionMappingTest {
                 PermissionMapping.getGroupOfPlatformPermission(Manifest.permission.READ_CONTACTS)
             )
     }
+
+    @Test
+    fun testGetPlatformPermissionGroupForOp_repeatedLookup_returnsSameGroup() {
+        val permissionGroup =
+            PermissionMapping.getPlatformPermissionGroupForOp(AppOpsManager.OPSTR_CAMERA)
+
+        assertThat(PermissionMapping.getPlatformPermissionGroupForOp(AppOpsManager.OPSTR_CAMERA))
+            .isEqualTo(permissionGroup)
+        assertThat(permissionGroup).isEqualTo(Manifest.permission_group.CAMERA)
+    }
+
+    @Test
+    fun testGetPlatformPermissionGroups_areAllPlatformPermissionGroups() {
+        val permissionGroups = PermissionMapping.getPlatformPermissionGroups()
+
+        assertThat(permissionGroups).isNotEmpty()
+        for (permissionGroup in permissionGroups) {
+            assertThat(PermissionMapping.isPlatformPermissionGroup(permissionGroup)).isTrue()
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.permissioncontroller.tests.mocking.appops.data.repository
+
+import android.app.AppOpsManager
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel
+import com.android.permissioncontroller.appops.data.model.v31.DiscretePackageOpsModel.DiscreteOpModel
+import com.android.permissioncontroller.appops.data.repository.v31.DiscreteOpsStore
+import com.android.permissioncontroller.appops.data.repository.v31.DiscreteOpsStore.PackageKey
+import com.google.common.truth.Truth.assertThat
+import java.util.concurrent.TimeUnit
+import kotlinx.coroutines.test.runTest
+import org.junit.Test
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+class DiscreteOpsStoreTest {
+    private var currentTimeMillis = START_TIME_MILLIS
+    private val history = mutableMapOf<PackageKey, MutableList<DiscreteOpModel>>()
+    private val fetchedIntervals = mutableListOf<Pair<Long, Long>>()
+
+    /** Returns the events of [history] overlapping the given interval, like AppOpsManager does. */
+    private fun fetch(beginTimeMillis: Long, endTimeMillis: Long) =
+        history
+            .mapValues { (_, events) ->
+                events.filter {
+                    it.accessTimeMillis < endTimeMillis &&
+                        it.accessTimeMillis + maxOf(it.durationMillis, 0) >= beginTimeMillis
+                }
+            }
+            .filterValues { it.isNotEmpty() }
+
+    private fun newStore() =
+        DiscreteOpsStore(HISTORY_WINDOW_MILLIS, { currentTimeMillis }) {
+            beginTimeMillis,
+            endTimeMillis ->
+            fetchedIntervals.add(beginTimeMillis to endTimeMillis)
+            fetch(beginTimeMillis, endTimeMillis)
+        }
+
+    private fun addEvent(key: PackageKey, accessTimeMillis: Long, durationMillis: Long = 0) {
+        history
+            .getOrPut(key) { mutableListOf() }
+            .add(DiscreteOpModel(CAMERA, accessTimeMillis, durationMillis))
+    }
+
+    @Test
+    fun load_overlappingFetches_doesNotDoubleCountEvents() = runTest {
+        val store = newStore()
+        // Starts before the overlap of the next load but is long enough to be returned again.
+        addEvent(PACKAGE, currentTimeMillis - MINUTE_MILLIS * 10, MINUTE_MILLIS * 9)
+        // Starts within the overlap of the next load.
+        addEvent(PACKAGE, currentTimeMillis - MINUTE_MILLIS)
+        store.load()
+
+        currentTimeMillis += MINUTE_MILLIS
+        addEvent(PACKAGE, currentTimeMillis - 1)
+        val packageOps = store.load()
+
+        assertThat(fetchedIntervals.last())
+            .isEqualTo(START_TIME_MILLIS - DiscreteOpsStore.OVERLAP_MILLIS to currentTimeMillis)
+        assertThat(packageOps).hasSize(1)
+        assertThat(packageOps[0].appOpAccesses).containsExactlyElementsIn(history.getValue(PACKAGE))
+    }
+
+    @Test
+    fun load_eventsOutOfHistoryWindow_areEvicted() = runTest {
+        val store = newStore()
+        addEvent(PACKAGE, currentTimeMillis - HISTORY_WINDOW_MILLIS + MINUTE_MILLIS)
+        addEvent(OTHER_PACKAGE, currentTimeMillis - MINUTE_MILLIS)
+        store.load()
+
+        currentTimeMillis += MINUTE_MILLIS * 2
+        val packageOps = store.load()
+
+        assertThat(packageOps.map { it.packageName }).containsExactly(OTHER_PACKAGE.packageName)
+    }
+
+    @Test
+    fun load_afterInvalidate_reloadsWholeHistoryWindow() = runTest {
+        val store = newStore()
+        addEvent(PACKAGE, currentTimeMillis - MINUTE_MILLIS * 30)
+        addEvent(OTHER_PACKAGE, currentTimeMillis - MINUTE_MILLIS * 30)
+        store.load()
+
+        // A package removal drops its history, including events before the overlap.
+        history.remove(PACKAGE)
+        currentTimeMillis += MINUTE_MILLIS
+        store.invalidate()
+        val packageOps = store.load()
+
+        assertThat(fetchedIntervals.last())
+            .isEqualTo(currentTimeMillis - HISTORY_WINDOW_MILLIS to currentTimeMillis)
+        assertThat(packageOps.map { it.packageName }).containsExactly(OTHER_PACKAGE.packageName)
+    }
+
+    @Test
+    fun load_incrementally_equalsFullReload() = runTest {
+        val store = newStore()
+        for (step in 0 until 20) {
+            // New events are recorded up to the overlap before the previous load.
+            val key = if (step % 3 == 0) OTHER_PACKAGE else PACKAGE
+            addEvent(key, currentTimeMillis - MINUTE_MILLIS, MINUTE_MILLIS / 2)
+            addEvent(PACKAGE, currentTimeMillis - MINUTE_MILLIS * step, MINUTE_MILLIS * step)
+            currentTimeMillis += HISTORY_WINDOW_MILLIS / 7
+
+            val packageOps = store.load()
+            val reloadedPackageOps = newStore().load()
+
+            assertThat(toEvents(packageOps)).containsExactlyElementsIn(toEvents(reloadedPackageOps))
+            assertThat(toEvents(packageOps)).containsNoDuplicates()
+        }
+    }
+
+    private fun toEvents(packageOps: List<DiscretePackageOpsModel>) =
+        packageOps.flatMap { packageOp ->
+            val key = PackageKey(packageOp.packageName, packageOp.userId)
+            packageOp.appOpAccesses.map { key to it }
+        }
+
+    companion object {
+        private const val CAMERA = AppOpsManager.OPSTR_CAMERA
+        private val MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1)
+        private val HISTORY_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1)
+        private val START_TIME_MILLIS = TimeUnit.DAYS.toMillis(100)
+        private val PACKAGE = PackageKey("test.package", 0)
+        private val OTHER_PACKAGE = PackageKey("other.test.package", 0)
+    }
+}
@@ -841,6 +841,40 @@ class GetPermissionGroupUsageDetailsUseCaseTest {
         Truth.assertThat(permissionTimelineUsages.size).isEqualTo(1)
     }
 
+    @Test
+    fun manyUnsortedAccessesAreClustered() = runTest {
+        val accessCount = 50_000
+        val appOpEvents =
+            (1..accessCount)
+                .map { minute ->
+                    DiscreteOpModel(
+                        AppOpsManager.OPSTR_FINE_LOCATION,
+                        MINUTES.toMillis(minute.toLong()),
+                        -1
+                    )
+                }
+                .shuffled()
+        val discretePackageOps = flow {
+            emit(
+                listOf(
+                    DiscretePackageOpsModel(testPackageName, currentUser.identifier, appOpEvents),
+                )
+            )
+        }
+
+        val underTest =
+            getPermissionGroupUsageDetailsUseCase(LOCATION_PERMISSION_GROUP, discretePackageOps)
+        val permissionTimelineUsages = getResult(underTest, this)
+
+        Truth.assertThat(permissionTimelineUsages.size).isEqualTo(1)
+        val timelineModel = permissionTimelineUsages.first()
+        Truth.assertThat(timelineModel.accessStartMillis).isEqualTo(MINUTES.toMillis(1))
+        Truth.assertThat(timelineModel.accessEndMillis)
+            .isEqualTo(MINUTES.toMillis(accessCount.toLong()))
+        Truth.assertThat(timelineModel.durationMillis)
+            .isEqualTo(MINUTES.toMillis(accessCount.toLong()))
+    }
+
     private fun TestScope.getResult(
         useCase: GetPermissionGroupUsageDetailsUseCase,
         coroutineScope: CoroutineScope
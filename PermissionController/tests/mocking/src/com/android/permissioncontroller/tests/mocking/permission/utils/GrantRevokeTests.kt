@@ -65,6 +65,7 @@ import org.mockito.ArgumentMatchers.nullable
 import org.mockito.Mock
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.never
+import org.mockito.Mockito.times
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
 
@@ -609,6 +610,40 @@ class GrantRevokeTests {
         )
     }
 
+    /**
+     * Test the granting of a permission which has been auto-revoked. Its flags should only be
+     * written once, without being reverted when clearing [FLAG_PERMISSION_AUTO_REVOKED] on the
+     * group.
+     */
+    @Test
+    fun grantAutoRevokedPermWritesFlagsOnceTest() {
+        val pkg = createMockPackage(mapOf(FG_PERM_NAME to false))
+        val perms = mutableMapOf<String, LightPermission>()
+        perms[FG_PERM_NAME] =
+            createMockPerm(pkg, FG_PERM_NAME, null, null, FLAG_PERMISSION_AUTO_REVOKED)
+        val group = createMockGroup(pkg, perms)
+        resetMockAppState()
+
+        KotlinUtils.grantForegroundRuntimePermissions(app, group)
+
+        verify(context.packageManager, times(1))
+            .updatePermissionFlags(
+                eq(FG_PERM_NAME),
+                eq(TEST_PACKAGE_NAME),
+                anyInt(),
+                anyInt(),
+                eq(TEST_USER)
+            )
+        verify(context.packageManager)
+            .updatePermissionFlags(
+                FG_PERM_NAME,
+                TEST_PACKAGE_NAME,
+                PERMISSION_CONTROLLER_CHANGED_FLAG_MASK,
+                FLAG_PERMISSION_USER_SET,
+                TEST_USER
+            )
+    }
+
     /**
      * Test granting a group with a foreground permission that is system fixed, and another that
      * isn't. The system fixed permission should not change.
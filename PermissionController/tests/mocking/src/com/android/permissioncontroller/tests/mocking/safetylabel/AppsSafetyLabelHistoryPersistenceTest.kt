@@ -300,6 +300,33 @@ class AppsSafetyLabelHistoryPersistenceTest {
             .isEqualTo(appsSafetyLabelHistory)
     }
 
+    @Test
+    fun recordSafetyLabel_noChangeToLastLabel_doesNotNotifyListeners() {
+        val appsSafetyLabelHistory =
+            AppsSafetyLabelHistory(
+                listOf(
+                    AppSafetyLabelHistory(AppInfo(PACKAGE_NAME_1), listOf(SAFETY_LABEL_PKG_1_V2))
+                )
+            )
+        AppsSafetyLabelHistoryPersistence.write(dataFile, appsSafetyLabelHistory)
+        var changeCount = 0
+        val listener =
+            object : AppsSafetyLabelHistoryPersistence.ChangeListener {
+                override fun onSafetyLabelHistoryChanged() {
+                    changeCount++
+                }
+            }
+        AppsSafetyLabelHistoryPersistence.addListener(listener)
+
+        try {
+            AppsSafetyLabelHistoryPersistence.recordSafetyLabel(SAFETY_LABEL_PKG_1_V3, dataFile)
+        } finally {
+            AppsSafetyLabelHistoryPersistence.removeListener(listener)
+        }
+
+        assertThat(changeCount).isEqualTo(0)
+    }
+
     @Test
     fun recordSafetyLabels_addsToHistory() {
         val appsSafetyLabelHistory =
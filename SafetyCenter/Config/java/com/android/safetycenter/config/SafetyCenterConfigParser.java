@@ -626,6 +626,11 @@ public final class SafetyCenterConfigParser {
 
     private static String getValueToParse(
             String valueString, String parent, String name, Resources resources) {
+        // Most values are literals rather than resource names, avoid building and throwing a
+        // ParseException for each of them.
+        if (valueString.isEmpty() || valueString.charAt(0) != '@') {
+            return valueString;
+        }
         try {
             int id = parseStringResourceName(valueString, parent, name, resources);
             return resources.getString(id);
@@ -19,6 +19,7 @@ package com.android.safetycenter.internaldata;
 import static android.os.Build.VERSION_CODES.TIRAMISU;
 
 import android.util.Base64;
+import android.util.LruCache;
 
 import androidx.annotation.RequiresApi;
 
@@ -26,12 +27,31 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 
-/** A class to facilitate working with Safety Center IDs. */
+/**
+ * A class to facilitate working with Safety Center IDs.
+ *
+ * <p>The same IDs are encoded every time Safety Center data is assembled, and decoded every time
+ * they are passed back by the UI, so the most recently used encodings are cached. Cached protos
+ * are shared between callers, which is safe as they are immutable.
+ */
 @RequiresApi(TIRAMISU)
 public final class SafetyCenterIds {
 
     private static final int ENCODING_FLAGS = Base64.NO_WRAP | Base64.URL_SAFE;
 
+    private static final int MAX_CACHED_IDS = 256;
+
+    private static final LruCache<MessageLite, String> sEncodedIds =
+            new LruCache<>(MAX_CACHED_IDS);
+    private static final LruCache<String, SafetyCenterEntryId> sDecodedEntryIds =
+            new LruCache<>(MAX_CACHED_IDS);
+    private static final LruCache<String, SafetyCenterIssueId> sDecodedIssueIds =
+            new LruCache<>(MAX_CACHED_IDS);
+    private static final LruCache<String, SafetyCenterIssueKey> sDecodedIssueKeys =
+            new LruCache<>(MAX_CACHED_IDS);
+    private static final LruCache<String, SafetyCenterIssueActionId> sDecodedIssueActionIds =
+            new LruCache<>(MAX_CACHED_IDS);
+
     private SafetyCenterIds() {}
 
     /**
@@ -41,7 +61,7 @@ public final class SafetyCenterIds {
      * SafetyCenterEntryId}.
      */
     public static SafetyCenterEntryId entryIdFromString(String encoded) {
-        return decodeToProto(SafetyCenterEntryId.parser(), encoded);
+        return decodeToProto(SafetyCenterEntryId.parser(), sDecodedEntryIds, encoded);
     }
 
     /**
@@ -51,7 +71,7 @@ public final class SafetyCenterIds {
      * SafetyCenterIssueId}.
      */
     public static SafetyCenterIssueId issueIdFromString(String encoded) {
-        return decodeToProto(SafetyCenterIssueId.parser(), encoded);
+        return decodeToProto(SafetyCenterIssueId.parser(), sDecodedIssueIds, encoded);
     }
 
     /**
@@ -61,7 +81,7 @@ public final class SafetyCenterIds {
      * SafetyCenterIssueKey}.
      */
     public static SafetyCenterIssueKey issueKeyFromString(String encoded) {
-        return decodeToProto(SafetyCenterIssueKey.parser(), encoded);
+        return decodeToProto(SafetyCenterIssueKey.parser(), sDecodedIssueKeys, encoded);
     }
 
     /**
@@ -71,12 +91,17 @@ public final class SafetyCenterIds {
      * SafetyCenterIssueActionId}.
      */
     public static SafetyCenterIssueActionId issueActionIdFromString(String encoded) {
-        return decodeToProto(SafetyCenterIssueActionId.parser(), encoded);
+        return decodeToProto(SafetyCenterIssueActionId.parser(), sDecodedIssueActionIds, encoded);
     }
 
     /** Encodes a Safety Center id to a String. */
     public static String encodeToString(MessageLite message) {
-        return Base64.encodeToString(message.toByteArray(), ENCODING_FLAGS);
+        String encoded = sEncodedIds.get(message);
+        if (encoded == null) {
+            encoded = Base64.encodeToString(message.toByteArray(), ENCODING_FLAGS);
+            sEncodedIds.put(message, encoded);
+        }
+        return encoded;
     }
 
     /**
@@ -125,9 +150,14 @@ public final class SafetyCenterIds {
                 + "'}";
     }
 
-    private static <T extends MessageLite> T decodeToProto(Parser<T> parser, String encoded) {
+    private static <T extends MessageLite> T decodeToProto(
+            Parser<T> parser, LruCache<String, T> decodedIds, String encoded) {
+        T decoded = decodedIds.get(encoded);
+        if (decoded != null) {
+            return decoded;
+        }
         try {
-            return parser.parseFrom(Base64.decode(encoded, ENCODING_FLAGS));
+            decoded = parser.parseFrom(Base64.decode(encoded, ENCODING_FLAGS));
         } catch (InvalidProtocolBufferException e) {
             throw new IllegalArgumentException(
                     "Invalid ID: "
@@ -135,5 +165,7 @@ public final class SafetyCenterIds {
                             + " couldn't be parsed with "
                             + parser.getClass().getSimpleName());
         }
+        decodedIds.put(encoded, decoded);
+        return decoded;
     }
 }
@@ -237,8 +237,9 @@ public final class SafetyCenterIssuesPersistence {
      *
      * @param persistedSafetyCenterIssues the issue states to write
      * @param file the file to write to
+     * @return whether the issue states were written successfully
      */
-    public static void write(
+    public static boolean write(
             List<PersistedSafetyCenterIssue> persistedSafetyCenterIssues, File file) {
         AtomicFile atomicFile = new AtomicFile(file);
         FileOutputStream outputStream = null;
@@ -254,9 +255,11 @@ public final class SafetyCenterIssuesPersistence {
 
             serializer.endDocument();
             atomicFile.finishWrite(outputStream);
+            return true;
         } catch (Exception e) {
             Log.wtf(TAG, "Failed to write, restoring backup: " + file, e);
             atomicFile.failWrite(outputStream);
+            return false;
         } finally {
             try {
                 outputStream.close();
@@ -72,7 +72,7 @@ public class DataCategory {
      * null} if parsing results in an invalid or empty DataCategory
      */
     @Nullable
-    @VisibleForTesting
+    @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
     static DataCategory getDataCategory(
             @Nullable PersistableBundle dataCategoryMapBundle,
             @NonNull String dataUsage,
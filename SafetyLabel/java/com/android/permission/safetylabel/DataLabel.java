@@ -25,24 +25,37 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.permission.safetylabel.DataCategoryConstants.Category;
+import com.android.permission.safetylabel.DataLabelConstants.DataUsage;
+
 import java.util.Map;
 
 /**
  * Data label representation with data shared and data collected maps containing zero or more
  * {@link DataCategory}
+ *
+ * <p>When parsed from a {@link PersistableBundle}, the data collected and data shared maps are only
+ * decoded when first accessed, and single categories can be queried through {@link
+ * #getDataSharedCategory} and {@link #sharesCategory} without decoding the other categories.
  */
 public class DataLabel {
     @VisibleForTesting static final String KEY_DATA_LABEL = "data_labels";
-    private final Map<String, DataCategory> mDataCollected;
-    private final Map<String, DataCategory> mDataShared;
+    @Nullable private final PersistableBundle mDataLabelBundle;
+    @Nullable private volatile Map<String, DataCategory> mDataCollected;
+    @Nullable private volatile Map<String, DataCategory> mDataShared;
 
     public DataLabel(
             @NonNull Map<String, DataCategory> dataCollected,
             @NonNull Map<String, DataCategory> dataShared) {
+        mDataLabelBundle = null;
         mDataCollected = dataCollected;
         mDataShared = dataShared;
     }
 
+    private DataLabel(@NonNull PersistableBundle dataLabelBundle) {
+        mDataLabelBundle = dataLabelBundle;
+    }
+
     /** Returns a {@link DataLabel} created by parsing a SafetyLabel {@link PersistableBundle} */
     @NonNull
     @VisibleForTesting(otherwise = VisibleForTesting.PACKAGE_PRIVATE)
@@ -56,11 +69,7 @@ public class DataLabel {
             return null;
         }
 
-        Map<String, DataCategory> dataCollectedCategoryMap =
-                DataCategory.getDataCategoryMap(dataLabelBundle, DATA_USAGE_COLLECTED);
-        Map<String, DataCategory> dataSharedCategoryMap =
-                DataCategory.getDataCategoryMap(dataLabelBundle, DATA_USAGE_SHARED);
-        return new DataLabel(dataCollectedCategoryMap, dataSharedCategoryMap);
+        return new DataLabel(dataLabelBundle);
     }
 
     /**
@@ -69,7 +78,12 @@ public class DataLabel {
      */
     @NonNull
     public Map<String, DataCategory> getDataCollected() {
-        return mDataCollected;
+        Map<String, DataCategory> dataCollected = mDataCollected;
+        if (dataCollected == null) {
+            dataCollected = DataCategory.getDataCategoryMap(mDataLabelBundle, DATA_USAGE_COLLECTED);
+            mDataCollected = dataCollected;
+        }
+        return dataCollected;
     }
 
     /**
@@ -78,6 +92,41 @@ public class DataLabel {
      */
     @NonNull
     public Map<String, DataCategory> getDataShared() {
-        return mDataShared;
+        Map<String, DataCategory> dataShared = mDataShared;
+        if (dataShared == null) {
+            dataShared = DataCategory.getDataCategoryMap(mDataLabelBundle, DATA_USAGE_SHARED);
+            mDataShared = dataShared;
+        }
+        return dataShared;
+    }
+
+    /**
+     * Returns the data shared {@link DataCategory} for the given category, or {@code null} if that
+     * category isn't shared, without decoding the other categories.
+     */
+    @Nullable
+    public DataCategory getDataSharedCategory(@Category @NonNull String category) {
+        return getDataCategory(mDataShared, DATA_USAGE_SHARED, category);
+    }
+
+    /** Returns whether data of the given category is shared, according to this data label. */
+    public boolean sharesCategory(@Category @NonNull String category) {
+        return getDataSharedCategory(category) != null;
+    }
+
+    @Nullable
+    private DataCategory getDataCategory(
+            @Nullable Map<String, DataCategory> decodedDataCategoryMap,
+            @DataUsage @NonNull String dataUsage,
+            @Category @NonNull String category) {
+        if (decodedDataCategoryMap != null) {
+            return decodedDataCategoryMap.get(category);
+        }
+        if (mDataLabelBundle == null
+                || !DataCategoryConstants.VALID_CATEGORIES.contains(category)) {
+            return null;
+        }
+        return DataCategory.getDataCategory(
+                mDataLabelBundle.getPersistableBundle(dataUsage), dataUsage, category);
     }
 }
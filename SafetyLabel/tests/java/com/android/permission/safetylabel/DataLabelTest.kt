@@ -18,6 +18,7 @@ package com.android.permission.safetylabel
 
 import android.os.PersistableBundle
 import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.android.permission.safetylabel.DataCategoryConstants.CATEGORY_LOCATION
 import com.android.permission.safetylabel.SafetyLabelTestPersistableBundles.createInvalidSafetyLabelPersistableBundle
 import com.android.permission.safetylabel.SafetyLabelTestPersistableBundles.createSafetyLabelPersistableBundle
 import com.android.permission.safetylabel.SafetyLabelTestPersistableBundles.createSafetyLabelPersistableBundleWithEmptyDataCollected
@@ -123,4 +124,36 @@ class DataLabelTest {
         assertThat(dataLabel?.dataCollected).isNotEmpty()
         assertThat(dataLabel?.dataShared).isNotEmpty()
     }
+
+    @Test
+    fun sharesCategory_validBundle_returnsTrue() {
+        val dataLabel: DataLabel? = DataLabel.getDataLabel(createSafetyLabelPersistableBundle())
+
+        assertThat(dataLabel?.sharesCategory(CATEGORY_LOCATION)).isTrue()
+    }
+
+    @Test
+    fun sharesCategory_emptyDataSharedBundle_returnsFalse() {
+        val dataLabel: DataLabel? =
+            DataLabel.getDataLabel(createSafetyLabelPersistableBundleWithEmptyDataShared())
+
+        assertThat(dataLabel?.sharesCategory(CATEGORY_LOCATION)).isFalse()
+    }
+
+    @Test
+    fun sharesCategory_invalidCategory_returnsFalse() {
+        val dataLabel: DataLabel? = DataLabel.getDataLabel(createSafetyLabelPersistableBundle())
+
+        assertThat(dataLabel?.sharesCategory("invalid_category")).isFalse()
+    }
+
+    @Test
+    fun getDataSharedCategory_validBundle_matchesDataShared() {
+        val dataLabel: DataLabel? = DataLabel.getDataLabel(createSafetyLabelPersistableBundle())
+        val dataCategory: DataCategory? = dataLabel?.getDataSharedCategory(CATEGORY_LOCATION)
+
+        assertThat(dataCategory).isNotNull()
+        assertThat(dataCategory?.dataTypes?.keys)
+            .isEqualTo(dataLabel?.dataShared?.get(CATEGORY_LOCATION)?.dataTypes?.keys)
+    }
 }
@@ -24,33 +24,48 @@ import android.app.AppOpsManager;
 import android.app.ecm.EnhancedConfirmationManager;
 import android.app.ecm.IEnhancedConfirmationManager;
 import android.app.role.RoleManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.InstallSourceInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageInstaller;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.pm.Signature;
 import android.content.pm.SignedPackage;
+import android.content.pm.SigningInfo;
 import android.os.Binder;
 import android.os.Build;
 import android.os.SystemConfigManager;
 import android.os.UserHandle;
 import android.permission.flags.Flags;
+import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
+import android.util.SparseArray;
 
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
+import com.android.internal.annotations.GuardedBy;
 import com.android.internal.util.Preconditions;
 import com.android.permission.util.UserUtils;
 import com.android.server.SystemService;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.annotation.Retention;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -142,12 +157,63 @@ public class EnhancedConfirmationService extends SystemService {
         private final AppOpsManager mAppOpsManager;
         private final PackageManager mPackageManager;
 
+        private final Object mLock = new Object();
+
+        /**
+         * Maps user IDs to the {@link PackageTrust} of their packages, which are expensive to
+         * compute and only change when the package is updated.
+         */
+        @GuardedBy("mLock")
+        private final SparseArray<ArrayMap<String, PackageTrust>> mPackageTrusts =
+                new SparseArray<>();
+        @GuardedBy("mLock")
+        private long mPackageTrustHitCount = 0;
+        @GuardedBy("mLock")
+        private long mPackageTrustMissCount = 0;
+
         Stub() {
             Context context = getContext();
             mContext = context;
             mAttributionTag = context.getAttributionTag();
             mAppOpsManager = context.getSystemService(AppOpsManager.class);
             mPackageManager = context.getPackageManager();
+
+            registerPackageTrustsRemovalReceiver();
+        }
+
+        private void registerPackageTrustsRemovalReceiver() {
+            IntentFilter userIntentFilter = new IntentFilter();
+            userIntentFilter.addAction(Intent.ACTION_USER_REMOVED);
+            mContext.registerReceiverForAllUsers(new BroadcastReceiver() {
+                @Override
+                public void onReceive(@NonNull Context context, @NonNull Intent intent) {
+                    if (TextUtils.equals(intent.getAction(), Intent.ACTION_USER_REMOVED)) {
+                        int userId = intent.<UserHandle>getParcelableExtra(Intent.EXTRA_USER)
+                                .getIdentifier();
+                        synchronized (mLock) {
+                            mPackageTrusts.remove(userId);
+                        }
+                    }
+                }
+            }, userIntentFilter, null, null);
+
+            IntentFilter packageIntentFilter = new IntentFilter();
+            packageIntentFilter.addAction(Intent.ACTION_PACKAGE_FULLY_REMOVED);
+            packageIntentFilter.addDataScheme("package");
+            mContext.registerReceiverForAllUsers(new BroadcastReceiver() {
+                @Override
+                public void onReceive(@NonNull Context context, @NonNull Intent intent) {
+                    String packageName = intent.getData().getSchemeSpecificPart();
+                    int userId = getSendingUserId();
+                    synchronized (mLock) {
+                        ArrayMap<String, PackageTrust> userPackageTrusts =
+                                mPackageTrusts.get(userId);
+                        if (userPackageTrusts != null) {
+                            userPackageTrusts.remove(packageName);
+                        }
+                    }
+                }
+            }, packageIntentFilter, null, null);
         }
 
         public boolean isRestricted(@NonNull String packageName, @NonNull String settingIdentifier,
@@ -233,12 +299,32 @@ public class EnhancedConfirmationService extends SystemService {
                     android.Manifest.permission.MANAGE_ENHANCED_CONFIRMATION_STATES, methodName);
         }
 
+        @Override
+        protected void dump(@NonNull FileDescriptor fd, @NonNull PrintWriter fout,
+                @Nullable String[] args) {
+            if (getContext().checkCallingOrSelfPermission(android.Manifest.permission.DUMP)
+                    != PackageManager.PERMISSION_GRANTED) {
+                fout.println("Permission Denial: can't dump ecm from pid="
+                        + Binder.getCallingPid() + ", uid=" + Binder.getCallingUid()
+                        + " due to missing " + android.Manifest.permission.DUMP + " permission");
+                return;
+            }
+
+            synchronized (mLock) {
+                fout.println("PACKAGE TRUST CACHE (" + mPackageTrustHitCount + " hits, "
+                        + mPackageTrustMissCount + " misses)");
+                for (int i = 0, userCount = mPackageTrusts.size(); i < userCount; i++) {
+                    fout.println("  user " + mPackageTrusts.keyAt(i) + ": "
+                            + mPackageTrusts.valueAt(i).size() + " packages");
+                }
+            }
+        }
+
         private boolean isPackageEcmGuarded(@NonNull String packageName, @UserIdInt int userId)
                 throws NameNotFoundException {
-            ApplicationInfo applicationInfo = getApplicationInfoAsUser(packageName, userId);
+            PackageTrust packageTrust = getPackageTrust(packageName, userId);
             // Always trust allow-listed and pre-installed packages
-            if (isAllowlistedPackage(packageName) || isAllowlistedInstaller(packageName)
-                    || isPackagePreinstalled(applicationInfo)) {
+            if (packageTrust.mIsTrusted) {
                 return false;
             }
 
@@ -283,6 +369,44 @@ public class EnhancedConfirmationService extends SystemService {
                     || isAllowlistedInstaller(installingPackageName));
         }
 
+        /**
+         * Returns the {@link PackageTrust} of the given package, reusing the cached one if the
+         * package wasn't updated since it was computed.
+         */
+        @NonNull
+        private PackageTrust getPackageTrust(@NonNull String packageName, @UserIdInt int userId) {
+            PackageInfo packageInfo = getPackageInfoAsUser(packageName, userId);
+            if (packageInfo == null) {
+                return new PackageTrust(/* lastUpdateTime */ 0,
+                        isAllowlistedPackage(packageName) || isAllowlistedInstaller(packageName));
+            }
+
+            synchronized (mLock) {
+                ArrayMap<String, PackageTrust> userPackageTrusts = mPackageTrusts.get(userId);
+                PackageTrust packageTrust = userPackageTrusts != null
+                        ? userPackageTrusts.get(packageName) : null;
+                if (packageTrust != null
+                        && packageTrust.mLastUpdateTime == packageInfo.lastUpdateTime) {
+                    mPackageTrustHitCount++;
+                    return packageTrust;
+                }
+                mPackageTrustMissCount++;
+            }
+
+            PackageTrust packageTrust = new PackageTrust(packageInfo.lastUpdateTime,
+                    isAllowlistedPackage(packageName) || isAllowlistedInstaller(packageName)
+                            || isPackagePreinstalled(packageInfo.applicationInfo));
+            synchronized (mLock) {
+                ArrayMap<String, PackageTrust> userPackageTrusts = mPackageTrusts.get(userId);
+                if (userPackageTrusts == null) {
+                    userPackageTrusts = new ArrayMap<>();
+                    mPackageTrusts.put(userId, userPackageTrusts);
+                }
+                userPackageTrusts.put(packageName, packageTrust);
+            }
+            return packageTrust;
+        }
+
         private boolean isAllowlistedPackage(String packageName) {
             return isPackageSignedWithAnyOf(packageName,
                     mTrustedPackageCertDigests.get(packageName));
@@ -295,6 +419,14 @@ public class EnhancedConfirmationService extends SystemService {
 
         private boolean isPackageSignedWithAnyOf(String packageName, List<byte[]> certDigests) {
             if (packageName != null && certDigests != null) {
+                if (certDigests.size() > 1) {
+                    // Fetch the signing certificates once, rather than asking the package manager
+                    // about each of the trusted certificates.
+                    List<byte[]> packageCertDigests = getSigningCertificateDigests(packageName);
+                    if (packageCertDigests != null) {
+                        return containsAnyOf(packageCertDigests, certDigests);
+                    }
+                }
                 for (int i = 0, count = certDigests.size(); i < count; i++) {
                     byte[] trustedCertDigest = certDigests.get(i);
                     if (mPackageManager.hasSigningCertificate(packageName, trustedCertDigest,
@@ -306,6 +438,53 @@ public class EnhancedConfirmationService extends SystemService {
             return false;
         }
 
+        /**
+         * Returns the SHA-256 digests of the certificates in the signing lineage of the given
+         * package, or {@code null} if they should be checked through
+         * {@link PackageManager#hasSigningCertificate} instead.
+         */
+        @Nullable
+        private List<byte[]> getSigningCertificateDigests(@NonNull String packageName) {
+            SigningInfo signingInfo;
+            try {
+                signingInfo = mPackageManager.getPackageInfo(packageName,
+                        PackageManager.GET_SIGNING_CERTIFICATES).signingInfo;
+            } catch (NameNotFoundException e) {
+                return Collections.emptyList();
+            }
+            // Packages with multiple signers don't have a lineage, and aren't matched against a
+            // single certificate the same way.
+            if (signingInfo == null || signingInfo.hasMultipleSigners()) {
+                return null;
+            }
+            MessageDigest messageDigest;
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                Log.w(LOG_TAG, "SHA-256 not available", e);
+                return null;
+            }
+            Signature[] signingCertificates = signingInfo.getSigningCertificateHistory();
+            List<byte[]> certDigests = new ArrayList<>(signingCertificates.length);
+            for (Signature signingCertificate : signingCertificates) {
+                certDigests.add(messageDigest.digest(signingCertificate.toByteArray()));
+            }
+            return certDigests;
+        }
+
+        private static boolean containsAnyOf(List<byte[]> certDigests,
+                List<byte[]> trustedCertDigests) {
+            for (int i = 0, count = certDigests.size(); i < count; i++) {
+                byte[] certDigest = certDigests.get(i);
+                for (int j = 0, trustedCount = trustedCertDigests.size(); j < trustedCount; j++) {
+                    if (Arrays.equals(certDigest, trustedCertDigests.get(j))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
         /**
          * @return {@code true} if zero {@code <enhanced-confirmation-trusted-installer>} entries
          * are defined in {@code frameworks/base/data/etc/enhanced-confirmation.xml}; in this case,
@@ -375,10 +554,38 @@ public class EnhancedConfirmationService extends SystemService {
             }
         }
 
+        @Nullable
+        private PackageInfo getPackageInfoAsUser(@NonNull String packageName,
+                @UserIdInt int userId) {
+            try {
+                return mContext.createContextAsUser(UserHandle.of(userId), 0)
+                        .getPackageManager()
+                        .getPackageInfo(packageName, /* flags */ 0);
+            } catch (NameNotFoundException e) {
+                Log.w(LOG_TAG, "Package not found: " + packageName, e);
+                return null;
+            }
+        }
+
         private int getPackageUid(@NonNull String packageName, @UserIdInt int userId)
                 throws NameNotFoundException {
             return mPackageManager.getApplicationInfoAsUser(packageName, /* flags */ 0,
                     UserHandle.of(userId)).uid;
         }
     }
+
+    /**
+     * The part of the ECM verdict of a package that only depends on the package itself, and
+     * therefore only changes when it is updated, as opposed to its app op state.
+     */
+    private static final class PackageTrust {
+        private final long mLastUpdateTime;
+        /** Whether the package is allow-listed, an allow-listed installer or pre-installed. */
+        private final boolean mIsTrusted;
+
+        PackageTrust(long lastUpdateTime, boolean isTrusted) {
+            mLastUpdateTime = lastUpdateTime;
+            mIsTrusted = isTrusted;
+        }
+    }
 }
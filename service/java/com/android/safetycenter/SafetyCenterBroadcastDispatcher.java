@@ -41,6 +41,7 @@ import android.os.UserHandle;
 import android.safetycenter.SafetyCenterManager;
 import android.safetycenter.SafetyCenterManager.RefreshReason;
 import android.safetycenter.SafetySourceData;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
@@ -52,6 +53,7 @@ import com.android.safetycenter.SafetyCenterConfigReader.Broadcast;
 import com.android.safetycenter.UserProfileGroup.ProfileType;
 import com.android.safetycenter.data.SafetyCenterDataManager;
 
+import java.io.PrintWriter;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -74,6 +76,15 @@ final class SafetyCenterBroadcastDispatcher {
     private final SafetyCenterRefreshTracker mSafetyCenterRefreshTracker;
     private final SafetyCenterDataManager mSafetyCenterDataManager;
 
+    // Whether an explicit broadcast resolves, keyed by user ID, then by target package name and
+    // then by intent action. This avoids querying the PackageManager on every refresh, and is
+    // invalidated whenever the target package changes.
+    private final SparseArray<ArrayMap<String, ArrayMap<String, Boolean>>>
+            mBroadcastResolutionCache = new SparseArray<>();
+
+    private int mBroadcastResolutionCacheHits = 0;
+    private int mBroadcastResolutionCacheMisses = 0;
+
     SafetyCenterBroadcastDispatcher(
             Context context,
             SafetyCenterConfigReader safetyCenterConfigReader,
@@ -266,11 +277,86 @@ final class SafetyCenterBroadcastDispatcher {
     }
 
     private boolean doesBroadcastResolve(Intent broadcastIntent, UserHandle userHandle) {
+        String packageName = broadcastIntent.getPackage();
+        String action = broadcastIntent.getAction();
+        int userId = userHandle.getIdentifier();
+        if (packageName == null || action == null) {
+            return queryBroadcastResolves(broadcastIntent, userId);
+        }
+
+        ArrayMap<String, ArrayMap<String, Boolean>> packagesToActions =
+                mBroadcastResolutionCache.get(userId);
+        if (packagesToActions == null) {
+            packagesToActions = new ArrayMap<>();
+            mBroadcastResolutionCache.put(userId, packagesToActions);
+        }
+        ArrayMap<String, Boolean> actionsToResolves = packagesToActions.get(packageName);
+        if (actionsToResolves == null) {
+            actionsToResolves = new ArrayMap<>();
+            packagesToActions.put(packageName, actionsToResolves);
+        }
+        Boolean resolves = actionsToResolves.get(action);
+        if (resolves != null) {
+            mBroadcastResolutionCacheHits++;
+            return resolves;
+        }
+
+        mBroadcastResolutionCacheMisses++;
+        boolean queriedResolves = queryBroadcastResolves(broadcastIntent, userId);
+        actionsToResolves.put(action, queriedResolves);
+        return queriedResolves;
+    }
+
+    private boolean queryBroadcastResolves(Intent broadcastIntent, @UserIdInt int userId) {
         return !PackageUtils.queryUnfilteredBroadcastReceiversAsUser(
-                        broadcastIntent, /* flags= */ 0, userHandle.getIdentifier(), mContext)
+                        broadcastIntent, /* flags= */ 0, userId, mContext)
                 .isEmpty();
     }
 
+    /**
+     * Invalidates the cached broadcast resolutions of the given {@code packageName} for the given
+     * {@code userId}.
+     *
+     * <p>This must be called whenever the package is added, changed or removed, as this may change
+     * which of its receivers can handle the Safety Center broadcasts.
+     */
+    void invalidateBroadcastResolution(String packageName, @UserIdInt int userId) {
+        ArrayMap<String, ArrayMap<String, Boolean>> packagesToActions =
+                mBroadcastResolutionCache.get(userId);
+        if (packagesToActions == null) {
+            return;
+        }
+        packagesToActions.remove(packageName);
+    }
+
+    /** Clears the cached broadcast resolutions for the given {@code userId}. */
+    void clearForUser(@UserIdInt int userId) {
+        mBroadcastResolutionCache.remove(userId);
+    }
+
+    /** Clears all the cached broadcast resolutions. */
+    void clear() {
+        mBroadcastResolutionCache.clear();
+    }
+
+    /** Dumps state for debugging purposes. */
+    void dump(PrintWriter fout) {
+        int count = mBroadcastResolutionCache.size();
+        fout.println(
+                "BROADCAST RESOLUTION CACHE ("
+                        + count
+                        + ", hits="
+                        + mBroadcastResolutionCacheHits
+                        + ", misses="
+                        + mBroadcastResolutionCacheMisses
+                        + ")");
+        for (int i = 0; i < count; i++) {
+            int userId = mBroadcastResolutionCache.keyAt(i);
+            fout.println("\t[" + i + "] " + userId + " -> " + mBroadcastResolutionCache.valueAt(i));
+        }
+        fout.println();
+    }
+
     private static Intent createExplicitEnabledChangedIntent(String packageName) {
         return createImplicitEnabledChangedIntent().setPackage(packageName);
     }
@@ -25,11 +25,13 @@ import static java.util.Collections.unmodifiableList;
 import static java.util.Objects.requireNonNull;
 
 import android.content.res.Resources;
+import android.os.SystemClock;
 import android.safetycenter.config.SafetyCenterConfig;
 import android.safetycenter.config.SafetySource;
 import android.safetycenter.config.SafetySourcesGroup;
 import android.util.ArrayMap;
 import android.util.Log;
+import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 
@@ -64,6 +66,8 @@ public final class SafetyCenterConfigReader {
 
     @Nullable private SafetyCenterConfigInternal mConfigInternalOverrideForTests;
 
+    private int mConfigIndexBuildCount = 0;
+
     /** Creates a {@link SafetyCenterConfigReader} from a {@link SafetyCenterResourcesApk}. */
     SafetyCenterConfigReader(SafetyCenterResourcesApk safetyCenterResourcesApk) {
         mSafetyCenterResourcesApk = safetyCenterResourcesApk;
@@ -83,6 +87,7 @@ public final class SafetyCenterConfigReader {
             return false;
         }
         mConfigInternalFromXml = SafetyCenterConfigInternal.from(safetyCenterConfig);
+        mConfigIndexBuildCount++;
         return true;
     }
 
@@ -94,6 +99,7 @@ public final class SafetyCenterConfigReader {
      */
     void setConfigOverrideForTests(SafetyCenterConfig safetyCenterConfig) {
         mConfigInternalOverrideForTests = SafetyCenterConfigInternal.from(safetyCenterConfig);
+        mConfigIndexBuildCount++;
     }
 
     /**
@@ -122,6 +128,15 @@ public final class SafetyCenterConfigReader {
         return getCurrentConfigInternal().getLoggableSourcesGroups();
     }
 
+    /**
+     * Returns the {@link ExternalSafetySource}s of the current {@link SafetyCenterConfig} that
+     * support the given {@link ProfileType}, in the order they are defined in the config.
+     */
+    public List<ExternalSafetySource> getExternalSafetySourcesForProfileType(
+            @ProfileType int profileType) {
+        return getCurrentConfigInternal().getExternalSafetySourcesForProfileType(profileType);
+    }
+
     /**
      * Returns the {@link ExternalSafetySource} associated with the {@code safetySourceId}, if any.
      *
@@ -239,10 +254,15 @@ public final class SafetyCenterConfigReader {
         }
 
         Resources resources = mSafetyCenterResourcesApk.getResources();
+        long startMillis = SystemClock.elapsedRealtime();
         try {
             SafetyCenterConfig safetyCenterConfig =
                     SafetyCenterConfigParser.parseXmlResource(in, resources);
-            Log.d(TAG, "SafetyCenterConfig loaded successfully");
+            Log.d(
+                    TAG,
+                    "SafetyCenterConfig loaded successfully in "
+                            + (SystemClock.elapsedRealtime() - startMillis)
+                            + "ms");
             return safetyCenterConfig;
         } catch (ParseException e) {
             Log.e(TAG, "Cannot parse SafetyCenterConfig", e);
@@ -252,6 +272,8 @@ public final class SafetyCenterConfigReader {
 
     /** Dumps state for debugging purposes. */
     void dump(PrintWriter fout) {
+        fout.println("CONFIG INDEX BUILDS (" + mConfigIndexBuildCount + ")");
+        fout.println();
         fout.println("XML CONFIG");
         fout.println("\t" + mConfigInternalFromXml);
         fout.println();
@@ -265,16 +287,20 @@ public final class SafetyCenterConfigReader {
 
         private final SafetyCenterConfig mConfig;
         private final ArrayMap<String, ExternalSafetySource> mExternalSafetySources;
+        private final SparseArray<List<ExternalSafetySource>>
+                mExternalSafetySourcesByProfileType;
         private final List<SafetySourcesGroup> mLoggableSourcesGroups;
         private final List<Broadcast> mBroadcasts;
 
         private SafetyCenterConfigInternal(
                 SafetyCenterConfig safetyCenterConfig,
                 ArrayMap<String, ExternalSafetySource> externalSafetySources,
+                SparseArray<List<ExternalSafetySource>> externalSafetySourcesByProfileType,
                 List<SafetySourcesGroup> loggableSourcesGroups,
                 List<Broadcast> broadcasts) {
             mConfig = safetyCenterConfig;
             mExternalSafetySources = externalSafetySources;
+            mExternalSafetySourcesByProfileType = externalSafetySourcesByProfileType;
             mLoggableSourcesGroups = loggableSourcesGroups;
             mBroadcasts = broadcasts;
         }
@@ -287,6 +313,11 @@ public final class SafetyCenterConfigReader {
             return mExternalSafetySources;
         }
 
+        private List<ExternalSafetySource> getExternalSafetySourcesForProfileType(
+                @ProfileType int profileType) {
+            return mExternalSafetySourcesByProfileType.get(profileType, emptyList());
+        }
+
         private List<SafetySourcesGroup> getLoggableSourcesGroups() {
             return mLoggableSourcesGroups;
         }
@@ -323,16 +354,53 @@ public final class SafetyCenterConfigReader {
         }
 
         private static SafetyCenterConfigInternal from(SafetyCenterConfig safetyCenterConfig) {
+            List<ExternalSafetySource> externalSafetySources =
+                    extractExternalSafetySources(safetyCenterConfig);
             return new SafetyCenterConfigInternal(
                     safetyCenterConfig,
-                    extractExternalSafetySources(safetyCenterConfig),
+                    indexExternalSafetySourcesById(externalSafetySources),
+                    indexExternalSafetySourcesByProfileType(externalSafetySources),
                     extractLoggableSafetySourcesGroups(safetyCenterConfig),
                     unmodifiableList(extractBroadcasts(safetyCenterConfig)));
         }
 
-        private static ArrayMap<String, ExternalSafetySource> extractExternalSafetySources(
+        private static ArrayMap<String, ExternalSafetySource> indexExternalSafetySourcesById(
+                List<ExternalSafetySource> externalSafetySources) {
+            ArrayMap<String, ExternalSafetySource> externalSafetySourcesById =
+                    new ArrayMap<>(externalSafetySources.size());
+            for (int i = 0; i < externalSafetySources.size(); i++) {
+                ExternalSafetySource externalSafetySource = externalSafetySources.get(i);
+                externalSafetySourcesById.put(
+                        externalSafetySource.getSafetySource().getId(), externalSafetySource);
+            }
+            return externalSafetySourcesById;
+        }
+
+        private static SparseArray<List<ExternalSafetySource>>
+                indexExternalSafetySourcesByProfileType(
+                        List<ExternalSafetySource> externalSafetySources) {
+            SparseArray<List<ExternalSafetySource>> externalSafetySourcesByProfileType =
+                    new SparseArray<>(ProfileType.ALL_PROFILE_TYPES.length);
+            for (int i = 0; i < ProfileType.ALL_PROFILE_TYPES.length; i++) {
+                @ProfileType int profileType = ProfileType.ALL_PROFILE_TYPES[i];
+                List<ExternalSafetySource> profileTypeSources = new ArrayList<>();
+                for (int j = 0; j < externalSafetySources.size(); j++) {
+                    ExternalSafetySource externalSafetySource = externalSafetySources.get(j);
+                    if (SafetySources.supportsProfileType(
+                            externalSafetySource.getSafetySource(), profileType)) {
+                        profileTypeSources.add(externalSafetySource);
+                    }
+                }
+                externalSafetySourcesByProfileType.put(
+                        profileType, unmodifiableList(profileTypeSources));
+            }
+            return externalSafetySourcesByProfileType;
+        }
+
+        /** Returns the external sources, in the order they are defined in the config. */
+        private static List<ExternalSafetySource> extractExternalSafetySources(
                 SafetyCenterConfig safetyCenterConfig) {
-            ArrayMap<String, ExternalSafetySource> externalSafetySources = new ArrayMap<>();
+            List<ExternalSafetySource> externalSafetySources = new ArrayList<>();
             List<SafetySourcesGroup> safetySourcesGroups =
                     safetyCenterConfig.getSafetySourcesGroups();
             for (int i = 0; i < safetySourcesGroups.size(); i++) {
@@ -352,9 +420,9 @@ public final class SafetyCenterConfigReader {
                                             == SafetySourcesGroup
                                                     .SAFETY_SOURCES_GROUP_TYPE_STATELESS;
 
-                    externalSafetySources.put(
-                            safetySource.getId(),
-                            new ExternalSafetySource(safetySource, hasEntryInStatelessGroup));
+                    externalSafetySources.add(
+                            new ExternalSafetySource(
+                                    safetySource, safetySourcesGroup, hasEntryInStatelessGroup));
                 }
             }
 
@@ -451,10 +519,15 @@ public final class SafetyCenterConfigReader {
      */
     public static final class ExternalSafetySource {
         private final SafetySource mSafetySource;
+        private final SafetySourcesGroup mSafetySourcesGroup;
         private final boolean mHasEntryInStatelessGroup;
 
-        private ExternalSafetySource(SafetySource safetySource, boolean hasEntryInStatelessGroup) {
+        private ExternalSafetySource(
+                SafetySource safetySource,
+                SafetySourcesGroup safetySourcesGroup,
+                boolean hasEntryInStatelessGroup) {
             mSafetySource = safetySource;
+            mSafetySourcesGroup = safetySourcesGroup;
             mHasEntryInStatelessGroup = hasEntryInStatelessGroup;
         }
 
@@ -463,6 +536,11 @@ public final class SafetyCenterConfigReader {
             return mSafetySource;
         }
 
+        /** Returns the {@link SafetySourcesGroup} the external {@link SafetySource} belongs to. */
+        public SafetySourcesGroup getSafetySourcesGroup() {
+            return mSafetySourcesGroup;
+        }
+
         /**
          * Returns whether the external {@link SafetySource} has an entry in a stateless {@link
          * SafetySourcesGroup}.
@@ -477,12 +555,14 @@ public final class SafetyCenterConfigReader {
             if (!(o instanceof ExternalSafetySource)) return false;
             ExternalSafetySource that = (ExternalSafetySource) o;
             return mHasEntryInStatelessGroup == that.mHasEntryInStatelessGroup
-                    && mSafetySource.equals(that.mSafetySource);
+                    && mSafetySource.equals(that.mSafetySource)
+                    && mSafetySourcesGroup.getId().equals(that.mSafetySourcesGroup.getId());
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(mSafetySource, mHasEntryInStatelessGroup);
+            return Objects.hash(
+                    mSafetySource, mSafetySourcesGroup.getId(), mHasEntryInStatelessGroup);
         }
 
         @Override
@@ -490,6 +570,8 @@ public final class SafetyCenterConfigReader {
             return "ExternalSafetySource{"
                     + "mSafetySource="
                     + mSafetySource
+                    + ", mSafetySourcesGroupId="
+                    + mSafetySourcesGroup.getId()
                     + ", mHasEntryInStatelessGroup="
                     + mHasEntryInStatelessGroup
                     + '}';
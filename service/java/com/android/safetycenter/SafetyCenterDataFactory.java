@@ -152,46 +152,44 @@ public final class SafetyCenterDataFactory {
             String packageName,
             UserProfileGroup userProfileGroup,
             List<SafetySourcesGroup> safetySourcesGroups) {
-        List<SafetyCenterEntryOrGroup> safetyCenterEntryOrGroups = new ArrayList<>();
-        List<SafetyCenterStaticEntryGroup> safetyCenterStaticEntryGroups = new ArrayList<>();
-        SafetyCenterOverallState safetyCenterOverallState = new SafetyCenterOverallState();
-        Bundle staticEntriesToIds = new Bundle();
-
-        for (int i = 0; i < safetySourcesGroups.size(); i++) {
-            SafetySourcesGroup safetySourcesGroup = safetySourcesGroups.get(i);
+        return assembleSafetyCenterData(
+                packageName,
+                userProfileGroup,
+                safetySourcesGroups,
+                assembleSafetyCenterIssues(userProfileGroup));
+    }
 
-            int safetySourcesGroupType = safetySourcesGroup.getType();
-            switch (safetySourcesGroupType) {
-                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_STATEFUL:
-                    addSafetyCenterEntryGroup(
-                            safetyCenterOverallState,
-                            safetyCenterEntryOrGroups,
-                            safetySourcesGroup,
-                            packageName,
-                            userProfileGroup);
-                    break;
-                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_STATELESS:
-                    addSafetyCenterStaticEntryGroup(
-                            staticEntriesToIds,
-                            safetyCenterOverallState,
-                            safetyCenterStaticEntryGroups,
-                            safetySourcesGroup,
-                            packageName,
-                            userProfileGroup);
-                    break;
-                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_HIDDEN:
-                    break;
-                default:
-                    Log.w(TAG, "Unexpected SafetySourceGroupType: " + safetySourcesGroupType);
-                    break;
-            }
-        }
+    /**
+     * Returns the current {@link SafetyCenterData} for the given {@code packageName} and {@link
+     * UserProfileGroup}, reusing the given {@link SafetyCenterIssues}.
+     *
+     * <p>The {@link SafetyCenterIssues} must have been returned by {@link
+     * #assembleSafetyCenterIssues(UserProfileGroup)} for the same {@link UserProfileGroup}, and
+     * without any change to the underlying data in between. This allows sharing them when
+     * assembling {@link SafetyCenterData} for multiple packages at once.
+     */
+    SafetyCenterData assembleSafetyCenterData(
+            String packageName,
+            UserProfileGroup userProfileGroup,
+            SafetyCenterIssues safetyCenterIssues) {
+        return assembleSafetyCenterData(
+                packageName, userProfileGroup, getAllGroups(), safetyCenterIssues);
+    }
 
+    /**
+     * Returns the {@link SafetyCenterIssues} of the given {@link UserProfileGroup}.
+     *
+     * <p>Unlike entries, issues don't depend on the package that the {@link SafetyCenterData} is
+     * assembled for, so they can be shared across packages using {@link
+     * #assembleSafetyCenterData(String, UserProfileGroup, SafetyCenterIssues)}.
+     */
+    SafetyCenterIssues assembleSafetyCenterIssues(UserProfileGroup userProfileGroup) {
         List<SafetySourceIssueInfo> issuesInfo =
                 mSafetyCenterDataManager.getIssuesDedupedSortedDescFor(userProfileGroup);
 
         List<SafetyCenterIssue> safetyCenterIssues = new ArrayList<>();
         List<SafetyCenterIssue> safetyCenterDismissedIssues = new ArrayList<>();
+        SafetyCenterOverallState issuesOverallState = new SafetyCenterOverallState();
         SafetySourceIssueInfo topNonDismissedIssueInfo = null;
         int numTipIssues = 0;
         int numAutomaticIssues = 0;
@@ -211,7 +209,7 @@ public final class SafetyCenterDataFactory {
                 safetyCenterDismissedIssues.add(safetyCenterIssue);
             } else {
                 safetyCenterIssues.add(safetyCenterIssue);
-                safetyCenterOverallState.addIssueOverallSeverityLevel(
+                issuesOverallState.addIssueOverallSeverityLevel(
                         toSafetyCenterStatusOverallSeverityLevel(
                                 issueInfo.getSafetySourceIssue().getSeverityLevel()));
                 if (topNonDismissedIssueInfo == null) {
@@ -232,6 +230,64 @@ public final class SafetyCenterDataFactory {
             }
         }
 
+        return new SafetyCenterIssues(
+                safetyCenterIssues,
+                safetyCenterDismissedIssues,
+                issuesOverallState.mIssuesOverallSeverityLevel,
+                topNonDismissedIssueInfo,
+                numTipIssues,
+                numAutomaticIssues,
+                issuesToGroups);
+    }
+
+    private SafetyCenterData assembleSafetyCenterData(
+            String packageName,
+            UserProfileGroup userProfileGroup,
+            List<SafetySourcesGroup> safetySourcesGroups,
+            SafetyCenterIssues issues) {
+        List<SafetyCenterEntryOrGroup> safetyCenterEntryOrGroups = new ArrayList<>();
+        List<SafetyCenterStaticEntryGroup> safetyCenterStaticEntryGroups = new ArrayList<>();
+        SafetyCenterOverallState safetyCenterOverallState = new SafetyCenterOverallState();
+        Bundle staticEntriesToIds = new Bundle();
+
+        for (int i = 0; i < safetySourcesGroups.size(); i++) {
+            SafetySourcesGroup safetySourcesGroup = safetySourcesGroups.get(i);
+
+            int safetySourcesGroupType = safetySourcesGroup.getType();
+            switch (safetySourcesGroupType) {
+                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_STATEFUL:
+                    addSafetyCenterEntryGroup(
+                            safetyCenterOverallState,
+                            safetyCenterEntryOrGroups,
+                            safetySourcesGroup,
+                            packageName,
+                            userProfileGroup);
+                    break;
+                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_STATELESS:
+                    addSafetyCenterStaticEntryGroup(
+                            staticEntriesToIds,
+                            safetyCenterOverallState,
+                            safetyCenterStaticEntryGroups,
+                            safetySourcesGroup,
+                            packageName,
+                            userProfileGroup);
+                    break;
+                case SafetySourcesGroup.SAFETY_SOURCES_GROUP_TYPE_HIDDEN:
+                    break;
+                default:
+                    Log.w(TAG, "Unexpected SafetySourceGroupType: " + safetySourcesGroupType);
+                    break;
+            }
+        }
+
+        List<SafetyCenterIssue> safetyCenterIssues = issues.mIssues;
+        List<SafetyCenterIssue> safetyCenterDismissedIssues = issues.mDismissedIssues;
+        SafetySourceIssueInfo topNonDismissedIssueInfo = issues.mTopNonDismissedIssueInfo;
+        int numTipIssues = issues.mNumTipIssues;
+        int numAutomaticIssues = issues.mNumAutomaticIssues;
+        Bundle issuesToGroups = issues.mIssuesToGroups;
+        safetyCenterOverallState.addIssueOverallSeverityLevel(issues.mOverallSeverityLevel);
+
         int refreshStatus = mSafetyCenterRefreshTracker.getRefreshStatus();
         SafetyCenterStatus safetyCenterStatus =
                 new SafetyCenterStatus.Builder(
@@ -1416,6 +1472,43 @@ public final class SafetyCenterDataFactory {
         }
     }
 
+    /**
+     * The issues of a {@link UserProfileGroup}, which are the part of a {@link SafetyCenterData}
+     * that doesn't depend on the package it is assembled for.
+     *
+     * <p>Instances are immutable once built, and must not be modified when shared across multiple
+     * {@link SafetyCenterData}.
+     */
+    static final class SafetyCenterIssues {
+
+        private final List<SafetyCenterIssue> mIssues;
+        private final List<SafetyCenterIssue> mDismissedIssues;
+
+        @SafetyCenterStatus.OverallSeverityLevel private final int mOverallSeverityLevel;
+
+        @Nullable private final SafetySourceIssueInfo mTopNonDismissedIssueInfo;
+        private final int mNumTipIssues;
+        private final int mNumAutomaticIssues;
+        private final Bundle mIssuesToGroups;
+
+        private SafetyCenterIssues(
+                List<SafetyCenterIssue> issues,
+                List<SafetyCenterIssue> dismissedIssues,
+                @SafetyCenterStatus.OverallSeverityLevel int overallSeverityLevel,
+                @Nullable SafetySourceIssueInfo topNonDismissedIssueInfo,
+                int numTipIssues,
+                int numAutomaticIssues,
+                Bundle issuesToGroups) {
+            mIssues = issues;
+            mDismissedIssues = dismissedIssues;
+            mOverallSeverityLevel = overallSeverityLevel;
+            mTopNonDismissedIssueInfo = topNonDismissedIssueInfo;
+            mNumTipIssues = numTipIssues;
+            mNumAutomaticIssues = numAutomaticIssues;
+            mIssuesToGroups = issuesToGroups;
+        }
+    }
+
     private static final class HighestSeverityIssueOnlyIssue {
         @Nullable private SafetySourceIssue mSafetySourceIssue = null;
     }
@@ -29,6 +29,8 @@ import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 
+import com.android.safetycenter.SafetyCenterDataFactory.SafetyCenterIssues;
+
 import java.io.PrintWriter;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -86,7 +88,7 @@ final class SafetyCenterListeners {
      * UserProfileGroup}.
      */
     void deliverDataForUserProfileGroup(UserProfileGroup userProfileGroup) {
-        ArrayMap<String, SafetyCenterData> safetyCenterDataCache = new ArrayMap<>();
+        SafetyCenterDataCache safetyCenterDataCache = new SafetyCenterDataCache();
         int[] relevantUserIds = userProfileGroup.getAllRunningProfilesUserIds();
         for (int i = 0; i < relevantUserIds.length; i++) {
             deliverUpdateForUser(
@@ -104,7 +106,7 @@ final class SafetyCenterListeners {
      */
     void deliverErrorForUserProfileGroup(
             UserProfileGroup userProfileGroup, SafetyCenterErrorDetails safetyCenterErrorDetails) {
-        ArrayMap<String, SafetyCenterData> safetyCenterDataCache = new ArrayMap<>();
+        SafetyCenterDataCache safetyCenterDataCache = new SafetyCenterDataCache();
         int[] relevantUserIds = userProfileGroup.getAllRunningProfilesUserIds();
         for (int i = 0; i < relevantUserIds.length; i++) {
             deliverUpdateForUser(
@@ -189,7 +191,7 @@ final class SafetyCenterListeners {
     private void deliverUpdateForUser(
             @UserIdInt int userId,
             UserProfileGroup userProfileGroup,
-            ArrayMap<String, SafetyCenterData> safetyCenterDataCache,
+            SafetyCenterDataCache safetyCenterDataCache,
             boolean updateSafetyCenterData,
             @Nullable SafetyCenterErrorDetails safetyCenterErrorDetails) {
         RemoteCallbackList<IOnSafetyCenterDataChangedListener> listenersForUserId =
@@ -223,16 +225,22 @@ final class SafetyCenterListeners {
     }
 
     private SafetyCenterData assembleSafetyCenterDataIfAbsent(
-            ArrayMap<String, SafetyCenterData> safetyCenterDataCache,
+            SafetyCenterDataCache safetyCenterDataCache,
             String packageName,
             UserProfileGroup userProfileGroup) {
-        SafetyCenterData cachedSafetyCenterData = safetyCenterDataCache.get(packageName);
+        SafetyCenterData cachedSafetyCenterData =
+                safetyCenterDataCache.mSafetyCenterDataByPackage.get(packageName);
         if (cachedSafetyCenterData != null) {
             return cachedSafetyCenterData;
         }
+        if (safetyCenterDataCache.mSafetyCenterIssues == null) {
+            safetyCenterDataCache.mSafetyCenterIssues =
+                    mSafetyCenterDataFactory.assembleSafetyCenterIssues(userProfileGroup);
+        }
         SafetyCenterData safetyCenterData =
-                mSafetyCenterDataFactory.assembleSafetyCenterData(packageName, userProfileGroup);
-        safetyCenterDataCache.put(packageName, safetyCenterData);
+                mSafetyCenterDataFactory.assembleSafetyCenterData(
+                        packageName, userProfileGroup, safetyCenterDataCache.mSafetyCenterIssues);
+        safetyCenterDataCache.mSafetyCenterDataByPackage.put(packageName, safetyCenterData);
         return safetyCenterData;
     }
 
@@ -312,4 +320,20 @@ final class SafetyCenterListeners {
                     + '}';
         }
     }
+
+    /**
+     * Caches the {@link SafetyCenterData} assembled for each package while delivering a single
+     * update to the listeners of a {@link UserProfileGroup}.
+     *
+     * <p>The issues don't depend on the package, so they're only assembled once and shared across
+     * all the packages.
+     */
+    private static final class SafetyCenterDataCache {
+
+        private final ArrayMap<String, SafetyCenterData> mSafetyCenterDataByPackage =
+                new ArrayMap<>();
+
+        @Nullable private SafetyCenterIssues mSafetyCenterIssues = null;
+    }
+
 }
@@ -35,9 +35,12 @@ import android.util.Log;
 import androidx.annotation.Nullable;
 
 import com.android.safetycenter.logging.SafetyCenterStatsdLogger;
+import com.android.safetycenter.logging.SafetySourceRefreshLatencies;
 
 import java.io.PrintWriter;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
@@ -54,6 +57,9 @@ import javax.annotation.concurrent.NotThreadSafe;
 public final class SafetyCenterRefreshTracker {
     private static final String TAG = "SafetyCenterRefreshTrac";
 
+    /** The maximum number of finished refreshes to keep for the dumpsys output. */
+    private static final int MAX_FINISHED_REFRESHES = 10;
+
     private final Context mContext;
 
     @Nullable
@@ -63,6 +69,12 @@ public final class SafetyCenterRefreshTracker {
 
     private int mRefreshCounter = 0;
 
+    private final SafetySourceRefreshLatencies mSourceRefreshLatencies =
+            new SafetySourceRefreshLatencies();
+
+    private final ArrayDeque<FinishedRefresh> mFinishedRefreshes =
+            new ArrayDeque<>(MAX_FINISHED_REFRESHES);
+
     SafetyCenterRefreshTracker(Context context) {
         mContext = context;
     }
@@ -179,13 +191,22 @@ public final class SafetyCenterRefreshTracker {
                     sourceResult,
                     refreshReason,
                     dataChanged);
+            mSourceRefreshLatencies.record(safetySourceKey, duration, sourceResult);
         }
 
         if (!refreshInProgress.isComplete()) {
             return false;
         }
 
-        Log.v(TAG, "Refresh with id: " + refreshInProgress.getId() + " completed");
+        Log.v(
+                TAG,
+                "Refresh with id: "
+                        + refreshInProgress.getId()
+                        + " completed, first result after: "
+                        + refreshInProgress.getDurationToFirstResult()
+                        + ", complete after: "
+                        + refreshInProgress.getDurationSinceStart());
+        recordFinishedRefresh(refreshInProgress, /* timedOut= */ false);
         int wholeResult =
                 toSystemEventResult(/* success= */ !refreshInProgress.hasAnyTrackedSourceErrors());
         SafetyCenterStatsdLogger.writeWholeRefreshSystemEvent(
@@ -199,13 +220,16 @@ public final class SafetyCenterRefreshTracker {
     }
 
     /**
-     * Clears any ongoing refresh in progress, if any.
+     * Clears any ongoing refresh in progress, if any, as well as the finished refreshes and refresh
+     * latencies recorded so far.
      *
      * <p>Note that this method simply clears the tracking of a refresh, and does not prevent
      * scheduled broadcasts being sent by {@link
      * android.safetycenter.SafetyCenterManager#refreshSafetySources}.
      */
     void clearRefresh() {
+        mSourceRefreshLatencies.clear();
+        mFinishedRefreshes.clear();
         clearRefreshInternal();
     }
 
@@ -226,11 +250,16 @@ public final class SafetyCenterRefreshTracker {
     /**
      * Clears any ongoing refresh in progress for the given user.
      *
+     * <p>The finished refreshes and refresh latencies of the given user are also cleared.
+     *
      * <p>Note that this method simply clears the tracking of a refresh, and does not prevent
      * scheduled broadcasts being sent by {@link
      * android.safetycenter.SafetyCenterManager#refreshSafetySources}.
      */
     void clearRefreshForUser(@UserIdInt int userId) {
+        mSourceRefreshLatencies.clearForUser(userId);
+        mFinishedRefreshes.removeIf(
+                finishedRefresh -> finishedRefresh.mUserProfileGroup.contains(userId));
         if (mRefreshInProgress == null) {
             Log.d(TAG, "Clear refresh for user called but no refresh in progress");
             return;
@@ -274,7 +303,10 @@ public final class SafetyCenterRefreshTracker {
                         + " for refresh with reason: "
                         + refreshReason
                         + ", and id: "
-                        + clearedRefresh.getId());
+                        + clearedRefresh.getId()
+                        + ", first result after: "
+                        + clearedRefresh.getDurationToFirstResult());
+        recordFinishedRefresh(clearedRefresh, /* timedOut= */ true);
 
         for (int i = 0; i < timedOutSources.size(); i++) {
             SafetySourceKey sourceKey = timedOutSources.valueAt(i);
@@ -288,6 +320,10 @@ public final class SafetyCenterRefreshTracker {
                         SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__TIMEOUT,
                         refreshReason,
                         false);
+                mSourceRefreshLatencies.record(
+                        sourceKey,
+                        duration,
+                        SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__TIMEOUT);
             }
 
             Log.w(
@@ -310,6 +346,24 @@ public final class SafetyCenterRefreshTracker {
         return timedOutSources;
     }
 
+    /**
+     * Keeps track of the time it took the given {@link RefreshInProgress} to receive its first
+     * source result and to finish, for debugging purposes.
+     */
+    private void recordFinishedRefresh(RefreshInProgress refreshInProgress, boolean timedOut) {
+        if (mFinishedRefreshes.size() >= MAX_FINISHED_REFRESHES) {
+            mFinishedRefreshes.pollFirst();
+        }
+        mFinishedRefreshes.addLast(
+                new FinishedRefresh(
+                        refreshInProgress.getId(),
+                        refreshInProgress.getReason(),
+                        refreshInProgress.mUserProfileGroup,
+                        timedOut,
+                        refreshInProgress.getDurationToFirstResult(),
+                        refreshInProgress.getDurationSinceStart()));
+    }
+
     /**
      * Clears the refresh in progress and returns it for the caller to do what it needs to.
      *
@@ -359,6 +413,15 @@ public final class SafetyCenterRefreshTracker {
             fout.println("\t" + mRefreshInProgress);
         }
         fout.println();
+        int finishedCount = mFinishedRefreshes.size();
+        fout.println("FINISHED REFRESHES (" + finishedCount + ")");
+        Iterator<FinishedRefresh> it = mFinishedRefreshes.descendingIterator();
+        int i = 0;
+        while (it.hasNext()) {
+            fout.println("\t[" + i++ + "] " + it.next());
+        }
+        fout.println();
+        mSourceRefreshLatencies.dump(fout);
     }
 
     /** Class representing the state of a refresh in progress. */
@@ -369,6 +432,7 @@ public final class SafetyCenterRefreshTracker {
         private final UserProfileGroup mUserProfileGroup;
         private final ArraySet<String> mUntrackedSourcesIds;
         @ElapsedRealtimeLong private final long mStartElapsedMillis;
+        @ElapsedRealtimeLong @Nullable private Long mFirstResultElapsedMillis = null;
 
         // The values in this map are the start times of each source refresh. The alternative of
         // using mStartTime as the start time of all source refreshes was considered, but this
@@ -410,6 +474,18 @@ public final class SafetyCenterRefreshTracker {
             return Duration.ofMillis(SystemClock.elapsedRealtime() - mStartElapsedMillis);
         }
 
+        /**
+         * Returns the {@link Duration} it took for the first tracked source to respond to this
+         * refresh, or {@code null} if none has responded yet.
+         */
+        @Nullable
+        private Duration getDurationToFirstResult() {
+            if (mFirstResultElapsedMillis == null) {
+                return null;
+            }
+            return Duration.ofMillis(mFirstResultElapsedMillis - mStartElapsedMillis);
+        }
+
         @Nullable
         private Duration getDurationSinceSourceStart(SafetySourceKey safetySourceKey) {
             Long startElapsedMillis = mSourceRefreshesInFlight.get(safetySourceKey);
@@ -461,8 +537,11 @@ public final class SafetyCenterRefreshTracker {
         private Duration markSourceRefreshComplete(
                 SafetySourceKey safetySourceKey, boolean successful, boolean dataChanged) {
             Long startElapsedMillis = mSourceRefreshesInFlight.remove(safetySourceKey);
-
             boolean tracked = isTracked(safetySourceKey);
+            if (tracked && startElapsedMillis != null && mFirstResultElapsedMillis == null) {
+                mFirstResultElapsedMillis = SystemClock.elapsedRealtime();
+            }
+
             mAnyTrackedSourceErrors |= (tracked && !successful);
             mAnyTrackedSourceDataChanged |= dataChanged;
             Duration duration =
@@ -533,6 +612,8 @@ public final class SafetyCenterRefreshTracker {
                     + mSourceRefreshesInFlight
                     + ", mStartElapsedMillis="
                     + mStartElapsedMillis
+                    + ", mFirstResultElapsedMillis="
+                    + mFirstResultElapsedMillis
                     + ", mAnyTrackedSourceErrors="
                     + mAnyTrackedSourceErrors
                     + ", mAnyTrackedSourceDataChanged="
@@ -540,4 +621,49 @@ public final class SafetyCenterRefreshTracker {
                     + '}';
         }
     }
+
+    /** Class representing a refresh that finished, kept for debugging purposes. */
+    private static final class FinishedRefresh {
+
+        private final String mId;
+        @RefreshReason private final int mReason;
+        private final UserProfileGroup mUserProfileGroup;
+        private final boolean mTimedOut;
+        @Nullable private final Duration mTimeToFirstResult;
+        private final Duration mTimeToComplete;
+
+        private FinishedRefresh(
+                String id,
+                @RefreshReason int reason,
+                UserProfileGroup userProfileGroup,
+                boolean timedOut,
+                @Nullable Duration timeToFirstResult,
+                Duration timeToComplete) {
+            mId = id;
+            mReason = reason;
+            mUserProfileGroup = userProfileGroup;
+            mTimedOut = timedOut;
+            mTimeToFirstResult = timeToFirstResult;
+            mTimeToComplete = timeToComplete;
+        }
+
+        @Override
+        public String toString() {
+            return "FinishedRefresh{"
+                    + "mId='"
+                    + mId
+                    + '\''
+                    + ", mReason="
+                    + mReason
+                    + ", mUserProfileGroup="
+                    + mUserProfileGroup
+                    + ", mTimedOut="
+                    + mTimedOut
+                    + ", mTimeToFirstResult="
+                    + mTimeToFirstResult
+                    + ", mTimeToComplete="
+                    + mTimeToComplete
+                    + '}';
+        }
+    }
 }
@@ -47,6 +47,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.pm.PackageManager.PackageInfoFlags;
 import android.content.res.Resources;
+import android.net.Uri;
 import android.os.Binder;
 import android.os.ParcelFileDescriptor;
 import android.os.Process;
@@ -225,6 +226,7 @@ public final class SafetyCenterService extends SystemService {
                             mApiLock)
                     .register(getContext());
             new LocaleBroadcastReceiver().register(getContext());
+            new PackageBroadcastReceiver().register(getContext());
         }
     }
 
@@ -813,6 +815,7 @@ public final class SafetyCenterService extends SystemService {
                 }
                 if (all || subjects.contains("refresh")) {
                     mSafetyCenterRefreshTracker.dump(fout);
+                    mSafetyCenterBroadcastDispatcher.dump(fout);
                 }
                 if (all || subjects.contains("timeouts")) {
                     mSafetyCenterTimeouts.dump(fout);
@@ -1068,6 +1071,43 @@ public final class SafetyCenterService extends SystemService {
         }
     }
 
+    /**
+     * {@link BroadcastReceiver} which handles package changes, to invalidate the cached resolution
+     * of the broadcasts Safety Center sends to safety sources.
+     */
+    private final class PackageBroadcastReceiver extends BroadcastReceiver {
+
+        private static final String TAG = "SafetyCenterPackageBro";
+
+        void register(Context context) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiverForAllUsers(
+                    /* receiver= */ this,
+                    filter,
+                    /* broadcastPermission= */ null,
+                    /* scheduler= */ null);
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            String packageName = data == null ? null : data.getSchemeSpecificPart();
+            if (packageName == null) {
+                Log.w(TAG, "Received action: " + intent.getAction() + ", but missing package");
+                return;
+            }
+
+            int userId = getSendingUser().getIdentifier();
+            synchronized (mApiLock) {
+                mSafetyCenterBroadcastDispatcher.invalidateBroadcastResolution(packageName, userId);
+            }
+        }
+    }
+
     /**
      * {@link BroadcastReceiver} which handles user and work profile related broadcasts that Safety
      * Center is interested including quiet mode turning on/off and accounts being added/removed.
@@ -1212,6 +1252,7 @@ public final class SafetyCenterService extends SystemService {
         synchronized (mApiLock) {
             mSafetyCenterListeners.clearForUser(userId);
             mSafetyCenterRefreshTracker.clearRefreshForUser(userId);
+            mSafetyCenterBroadcastDispatcher.clearForUser(userId);
 
             if (clearDataPermanently) {
                 mSafetyCenterDataManager.clearForUser(userId);
@@ -1345,6 +1386,7 @@ public final class SafetyCenterService extends SystemService {
         mSafetyCenterDataManager.clear();
         mSafetyCenterTimeouts.clear();
         mSafetyCenterRefreshTracker.clearRefresh();
+        mSafetyCenterBroadcastDispatcher.clear();
         mNotificationSender.cancelAllNotifications();
     }
 
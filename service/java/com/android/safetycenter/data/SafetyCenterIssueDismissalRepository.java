@@ -87,6 +87,10 @@ final class SafetyCenterIssueDismissalRepository {
     private final ArrayMap<SafetyCenterIssueKey, IssueData> mIssues = new ArrayMap<>();
     private boolean mWriteStateToFileScheduled = false;
 
+    // Only accessed on the write handler thread, so that a write can be skipped when nothing
+    // persisted has changed since the last successful write.
+    @Nullable private List<PersistedSafetyCenterIssue> mLastWrittenState = null;
+
     SafetyCenterIssueDismissalRepository(
             ApiLock apiLock, SafetyCenterConfigReader safetyCenterConfigReader) {
         mApiLock = apiLock;
@@ -281,7 +285,8 @@ final class SafetyCenterIssueDismissalRepository {
                             .build();
             boolean isIssueNewlyReported = !mIssues.containsKey(issueKey);
             if (isIssueNewlyReported) {
-                mIssues.put(issueKey, new IssueData(Instant.now()));
+                String encodedKey = SafetyCenterIds.encodeToString(issueKey);
+                mIssues.put(issueKey, new IssueData(encodedKey, Instant.now()));
                 someDataChanged = true;
             }
         }
@@ -350,9 +355,7 @@ final class SafetyCenterIssueDismissalRepository {
     private List<PersistedSafetyCenterIssue> snapshot() {
         List<PersistedSafetyCenterIssue> persistedIssues = new ArrayList<>();
         for (int i = 0; i < mIssues.size(); i++) {
-            String encodedKey = SafetyCenterIds.encodeToString(mIssues.keyAt(i));
-            IssueData issueData = mIssues.valueAt(i);
-            persistedIssues.add(issueData.toPersistedIssueBuilder().setKey(encodedKey).build());
+            persistedIssues.add(mIssues.valueAt(i).toPersistedIssue());
         }
         return persistedIssues;
     }
@@ -483,8 +486,14 @@ final class SafetyCenterIssueDismissalRepository {
             // written in the correct order even if we are not holding the lock.
         }
 
-        SafetyCenterIssuesPersistence.write(
-                persistedSafetyCenterIssues, getIssueDismissalRepositoryFile());
+        if (persistedSafetyCenterIssues.equals(mLastWrittenState)) {
+            Log.v(TAG, "Safety Center persisted issues unchanged, skipping write");
+            return;
+        }
+        boolean written =
+                SafetyCenterIssuesPersistence.write(
+                        persistedSafetyCenterIssues, getIssueDismissalRepositoryFile());
+        mLastWrittenState = written ? persistedSafetyCenterIssues : null;
     }
 
     /** Read the contents of the file and load them into this class. */
@@ -517,13 +526,17 @@ final class SafetyCenterIssueDismissalRepository {
     private static final class IssueData {
 
         private static IssueData fromPersistedIssue(PersistedSafetyCenterIssue persistedIssue) {
-            IssueData issueData = new IssueData(persistedIssue.getFirstSeenAt());
+            IssueData issueData =
+                    new IssueData(persistedIssue.getKey(), persistedIssue.getFirstSeenAt());
             issueData.setDismissedAt(persistedIssue.getDismissedAt());
             issueData.setDismissCount(persistedIssue.getDismissCount());
             issueData.setNotificationDismissedAt(persistedIssue.getNotificationDismissedAt());
             return issueData;
         }
 
+        // The persisted form of this issue's key, encoded once to avoid re-encoding it on every
+        // write.
+        private final String mEncodedKey;
         private final Instant mFirstSeenAt;
 
         @Nullable private Instant mDismissedAt;
@@ -536,7 +549,8 @@ final class SafetyCenterIssueDismissalRepository {
         // Moment when a theoretical timer starts - when it ends the issue gets unmarked as hidden.
         @Nullable private Instant mResurfaceTimerStartTime;
 
-        private IssueData(Instant firstSeenAt) {
+        private IssueData(String encodedKey, Instant firstSeenAt) {
+            mEncodedKey = encodedKey;
             mFirstSeenAt = firstSeenAt;
         }
 
@@ -587,12 +601,14 @@ final class SafetyCenterIssueDismissalRepository {
             this.mResurfaceTimerStartTime = resurfaceTimerStartTime;
         }
 
-        private PersistedSafetyCenterIssue.Builder toPersistedIssueBuilder() {
+        private PersistedSafetyCenterIssue toPersistedIssue() {
             return new PersistedSafetyCenterIssue.Builder()
+                    .setKey(mEncodedKey)
                     .setFirstSeenAt(mFirstSeenAt)
                     .setDismissedAt(mDismissedAt)
                     .setDismissCount(mDismissCount)
-                    .setNotificationDismissedAt(mNotificationDismissedAt);
+                    .setNotificationDismissedAt(mNotificationDismissedAt)
+                    .build();
         }
 
         @Override
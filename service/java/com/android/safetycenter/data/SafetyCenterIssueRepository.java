@@ -28,10 +28,14 @@ import android.safetycenter.SafetySourceData;
 import android.safetycenter.SafetySourceIssue;
 import android.safetycenter.config.SafetySource;
 import android.safetycenter.config.SafetySourcesGroup;
+import android.util.ArrayMap;
 import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
+
 import com.android.modules.utils.build.SdkLevel;
 import com.android.safetycenter.SafetyCenterConfigReader;
+import com.android.safetycenter.SafetyCenterConfigReader.ExternalSafetySource;
 import com.android.safetycenter.SafetySourceIssueInfo;
 import com.android.safetycenter.SafetySourceKey;
 import com.android.safetycenter.SafetySources;
@@ -70,6 +74,11 @@ final class SafetyCenterIssueRepository {
 
     private final SparseArray<DeduplicationInfo> mUserIdToDedupInfo = new SparseArray<>();
 
+    // The issues built from each source's data, so that updating the issues of a user only needs
+    // to rebuild the SafetySourceIssueInfo (and their SafetyCenterIssueKey) of the sources whose
+    // data has changed since the last update.
+    private final ArrayMap<SafetySourceKey, SourceIssuesInfo> mSourceIssuesInfo = new ArrayMap<>();
+
     SafetyCenterIssueRepository(
             Context context,
             SafetySourceDataRepository safetySourceDataRepository,
@@ -186,36 +195,20 @@ final class SafetyCenterIssueRepository {
             @UserIdInt int userId, @ProfileType int profileType) {
         List<SafetySourceIssueInfo> allIssuesInfo = new ArrayList<>();
 
-        List<SafetySourcesGroup> safetySourcesGroups =
-                mSafetyCenterConfigReader.getSafetySourcesGroups();
-        for (int j = 0; j < safetySourcesGroups.size(); j++) {
+        List<ExternalSafetySource> externalSafetySources =
+                mSafetyCenterConfigReader.getExternalSafetySourcesForProfileType(profileType);
+        for (int i = 0; i < externalSafetySources.size(); i++) {
+            ExternalSafetySource externalSafetySource = externalSafetySources.get(i);
             addSafetySourceIssuesInfo(
-                    allIssuesInfo, safetySourcesGroups.get(j), userId, profileType);
+                    allIssuesInfo,
+                    externalSafetySource.getSafetySource(),
+                    externalSafetySource.getSafetySourcesGroup(),
+                    userId);
         }
 
         return allIssuesInfo;
     }
 
-    private void addSafetySourceIssuesInfo(
-            List<SafetySourceIssueInfo> issuesInfo,
-            SafetySourcesGroup safetySourcesGroup,
-            @UserIdInt int userId,
-            @ProfileType int profileType) {
-        List<SafetySource> safetySources = safetySourcesGroup.getSafetySources();
-        for (int i = 0; i < safetySources.size(); i++) {
-            SafetySource safetySource = safetySources.get(i);
-
-            if (!SafetySources.isExternal(safetySource)) {
-                continue;
-            }
-            if (!SafetySources.supportsProfileType(safetySource, profileType)) {
-                continue;
-            }
-
-            addSafetySourceIssuesInfo(issuesInfo, safetySource, safetySourcesGroup, userId);
-        }
-    }
-
     private void addSafetySourceIssuesInfo(
             List<SafetySourceIssueInfo> issuesInfo,
             SafetySource safetySource,
@@ -225,18 +218,19 @@ final class SafetyCenterIssueRepository {
         SafetySourceData safetySourceData = mSafetySourceDataRepository.getSafetySourceData(key);
 
         if (safetySourceData == null) {
+            mSourceIssuesInfo.remove(key);
             return;
         }
 
-        List<SafetySourceIssue> safetySourceIssues = safetySourceData.getIssues();
-        for (int i = 0; i < safetySourceIssues.size(); i++) {
-            SafetySourceIssue safetySourceIssue = safetySourceIssues.get(i);
-
-            SafetySourceIssueInfo safetySourceIssueInfo =
-                    new SafetySourceIssueInfo(
-                            safetySourceIssue, safetySource, safetySourcesGroup, userId);
-            issuesInfo.add(safetySourceIssueInfo);
+        SourceIssuesInfo sourceIssuesInfo = mSourceIssuesInfo.get(key);
+        if (sourceIssuesInfo == null
+                || !sourceIssuesInfo.isFor(safetySourceData, safetySource, safetySourcesGroup)) {
+            sourceIssuesInfo =
+                    new SourceIssuesInfo(
+                            safetySourceData, safetySource, safetySourcesGroup, userId);
+            mSourceIssuesInfo.put(key, sourceIssuesInfo);
         }
+        issuesInfo.addAll(sourceIssuesInfo.getIssuesInfo());
     }
 
     /**
@@ -282,10 +276,68 @@ final class SafetyCenterIssueRepository {
     /** Clears all the data from the repository. */
     void clear() {
         mUserIdToDedupInfo.clear();
+        mSourceIssuesInfo.clear();
     }
 
     /** Clears all data related to the given {@code userId}. */
     void clearForUser(@UserIdInt int userId) {
         mUserIdToDedupInfo.delete(userId);
+        // Loop in reverse index order to be able to remove entries while iterating.
+        for (int i = mSourceIssuesInfo.size() - 1; i >= 0; i--) {
+            if (mSourceIssuesInfo.keyAt(i).getUserId() == userId) {
+                mSourceIssuesInfo.removeAt(i);
+            }
+        }
+    }
+
+    /**
+     * The {@link SafetySourceIssueInfo} built from a given {@link SafetySourceData} instance, for a
+     * given {@link SafetySource} and {@link SafetySourcesGroup} instances of the config.
+     */
+    private static final class SourceIssuesInfo {
+
+        private final SafetySourceData mSafetySourceData;
+        private final SafetySource mSafetySource;
+        private final SafetySourcesGroup mSafetySourcesGroup;
+        private final List<SafetySourceIssueInfo> mIssuesInfo;
+
+        private SourceIssuesInfo(
+                SafetySourceData safetySourceData,
+                SafetySource safetySource,
+                SafetySourcesGroup safetySourcesGroup,
+                @UserIdInt int userId) {
+            mSafetySourceData = safetySourceData;
+            mSafetySource = safetySource;
+            mSafetySourcesGroup = safetySourcesGroup;
+            List<SafetySourceIssue> safetySourceIssues = safetySourceData.getIssues();
+            List<SafetySourceIssueInfo> issuesInfo = new ArrayList<>(safetySourceIssues.size());
+            for (int i = 0; i < safetySourceIssues.size(); i++) {
+                issuesInfo.add(
+                        new SafetySourceIssueInfo(
+                                safetySourceIssues.get(i),
+                                safetySource,
+                                safetySourcesGroup,
+                                userId));
+            }
+            mIssuesInfo = issuesInfo;
+        }
+
+        /**
+         * Returns whether this was built from the exact same instances as the ones given. The data
+         * repository and the config reader replace these objects on every change, so an identity
+         * check is enough (and much cheaper than {@link SafetySourceData#equals}).
+         */
+        private boolean isFor(
+                @Nullable SafetySourceData safetySourceData,
+                SafetySource safetySource,
+                SafetySourcesGroup safetySourcesGroup) {
+            return mSafetySourceData == safetySourceData
+                    && mSafetySource == safetySource
+                    && mSafetySourcesGroup == safetySourcesGroup;
+        }
+
+        private List<SafetySourceIssueInfo> getIssuesInfo() {
+            return mIssuesInfo;
+        }
     }
 }
@@ -22,6 +22,7 @@ import android.annotation.UserIdInt;
 import android.app.StatsManager;
 import android.app.StatsManager.StatsPullAtomCallback;
 import android.content.Context;
+import android.os.SystemClock;
 import android.safetycenter.SafetyCenterData;
 import android.safetycenter.config.SafetySource;
 import android.safetycenter.config.SafetySourcesGroup;
@@ -94,16 +95,19 @@ public final class SafetyCenterPullAtomCallback implements StatsPullAtomCallback
         }
         List<UserProfileGroup> userProfileGroups =
                 UserProfileGroup.getAllUserProfileGroups(mContext);
+        long lockAcquiredMillis;
         synchronized (mApiLock) {
+            lockAcquiredMillis = SystemClock.elapsedRealtime();
             if (!SafetyCenterFlags.getAllowStatsdLogging()) {
                 Log.i(TAG, "Skipping pulling and writing atoms due to logging being disabled");
                 return StatsManager.PULL_SKIP;
             }
             Log.d(TAG, "Pulling and writing atoms…");
+            // The config doesn't depend on the user, so it is only read once for all of them.
+            List<SafetySourcesGroup> loggableGroups =
+                    mSafetyCenterConfigReader.getLoggableSafetySourcesGroups();
             for (int i = 0; i < userProfileGroups.size(); i++) {
                 UserProfileGroup userProfileGroup = userProfileGroups.get(i);
-                List<SafetySourcesGroup> loggableGroups =
-                        mSafetyCenterConfigReader.getLoggableSafetySourcesGroups();
                 statsEvents.add(
                         createOverallSafetyStateAtomLocked(userProfileGroup, loggableGroups));
                 // The SAFETY_SOURCE_STATE_COLLECTED atoms are written instead of being pulled,
@@ -112,6 +116,15 @@ public final class SafetyCenterPullAtomCallback implements StatsPullAtomCallback
                 writeSafetySourceStateCollectedAtomsLocked(userProfileGroup, loggableGroups);
             }
         }
+        // Pulls contend with the Safety Center APIs for the lock, keep track of how long they
+        // hold it for.
+        Log.d(
+                TAG,
+                "Pulled and wrote atoms for "
+                        + userProfileGroups.size()
+                        + " profile group(s), holding the API lock for "
+                        + (SystemClock.elapsedRealtime() - lockAcquiredMillis)
+                        + "ms");
         return StatsManager.PULL_SUCCESS;
     }
 
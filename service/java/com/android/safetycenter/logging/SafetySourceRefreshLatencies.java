@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.safetycenter.logging;
+
+import static com.android.permission.PermissionStatsLog.SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__ERROR;
+import static com.android.permission.PermissionStatsLog.SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__TIMEOUT;
+
+import android.annotation.UserIdInt;
+import android.util.ArrayMap;
+
+import com.android.safetycenter.SafetySourceKey;
+import com.android.safetycenter.logging.SafetyCenterStatsdLogger.SystemEventResult;
+
+import java.io.PrintWriter;
+import java.time.Duration;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Keeps a histogram of the refresh response latencies of each safety source, for each user.
+ *
+ * <p>The same latencies are reported to statsd individually through {@link
+ * SafetyCenterStatsdLogger#writeSourceRefreshSystemEvent}; this class only aggregates them
+ * on-device so they can be inspected in the dumpsys output.
+ *
+ * <p>This class isn't thread safe. Thread safety must be handled by the caller.
+ *
+ * @hide
+ */
+@NotThreadSafe
+public final class SafetySourceRefreshLatencies {
+
+    /** Upper bounds (inclusive) of the histogram buckets, the last bucket being unbounded. */
+    private static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {
+        100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000
+    };
+
+    private final ArrayMap<SafetySourceKey, Histogram> mHistograms = new ArrayMap<>();
+
+    /** Records the {@code duration} a refresh of the source with the given key took. */
+    public void record(SafetySourceKey key, Duration duration, @SystemEventResult int result) {
+        Histogram histogram = mHistograms.get(key);
+        if (histogram == null) {
+            histogram = new Histogram();
+            mHistograms.put(key, histogram);
+        }
+        histogram.record(duration.toMillis(), result);
+    }
+
+    /** Clears all the recorded latencies. */
+    public void clear() {
+        mHistograms.clear();
+    }
+
+    /** Clears the latencies recorded for the given user. */
+    public void clearForUser(@UserIdInt int userId) {
+        // Loop in reverse index order to be able to remove entries while iterating.
+        for (int i = mHistograms.size() - 1; i >= 0; i--) {
+            if (mHistograms.keyAt(i).getUserId() == userId) {
+                mHistograms.removeAt(i);
+            }
+        }
+    }
+
+    /** Dumps state for debugging purposes, aggregating the latencies of all users. */
+    public void dump(PrintWriter fout) {
+        ArrayMap<String, Histogram> histogramsBySourceId = new ArrayMap<>();
+        for (int i = 0; i < mHistograms.size(); i++) {
+            String sourceId = mHistograms.keyAt(i).getSourceId();
+            Histogram histogram = histogramsBySourceId.get(sourceId);
+            if (histogram == null) {
+                histogram = new Histogram();
+                histogramsBySourceId.put(sourceId, histogram);
+            }
+            histogram.add(mHistograms.valueAt(i));
+        }
+
+        int count = histogramsBySourceId.size();
+        fout.println("SOURCE REFRESH LATENCIES (" + count + ")");
+        fout.println("\tbuckets (ms): " + bucketsToString());
+        for (int i = 0; i < count; i++) {
+            fout.println(
+                    "\t["
+                            + i
+                            + "] "
+                            + histogramsBySourceId.keyAt(i)
+                            + " -> "
+                            + histogramsBySourceId.valueAt(i));
+        }
+        fout.println();
+    }
+
+    private static String bucketsToString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            builder.append("<=").append(BUCKET_UPPER_BOUNDS_MILLIS[i]).append(", ");
+        }
+        long lastUpperBound = BUCKET_UPPER_BOUNDS_MILLIS[BUCKET_UPPER_BOUNDS_MILLIS.length - 1];
+        return builder.append('>').append(lastUpperBound).toString();
+    }
+
+    private static int bucketIndexOf(long durationMillis) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS_MILLIS.length; i++) {
+            if (durationMillis <= BUCKET_UPPER_BOUNDS_MILLIS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS_MILLIS.length;
+    }
+
+    /** The latency histogram of a single safety source. */
+    private static final class Histogram {
+
+        private final int[] mBucketCounts = new int[BUCKET_UPPER_BOUNDS_MILLIS.length + 1];
+        private int mCount = 0;
+        private int mErrorCount = 0;
+        private int mTimeoutCount = 0;
+        private long mTotalMillis = 0;
+        private long mMaxMillis = 0;
+
+        private void record(long durationMillis, @SystemEventResult int result) {
+            mBucketCounts[bucketIndexOf(durationMillis)]++;
+            mCount++;
+            mTotalMillis += durationMillis;
+            mMaxMillis = Math.max(mMaxMillis, durationMillis);
+            if (result == SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__ERROR) {
+                mErrorCount++;
+            } else if (result == SAFETY_CENTER_SYSTEM_EVENT_REPORTED__RESULT__TIMEOUT) {
+                mTimeoutCount++;
+            }
+        }
+
+        private void add(Histogram other) {
+            for (int i = 0; i < mBucketCounts.length; i++) {
+                mBucketCounts[i] += other.mBucketCounts[i];
+            }
+            mCount += other.mCount;
+            mErrorCount += other.mErrorCount;
+            mTimeoutCount += other.mTimeoutCount;
+            mTotalMillis += other.mTotalMillis;
+            mMaxMillis = Math.max(mMaxMillis, other.mMaxMillis);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder buckets = new StringBuilder("[");
+            for (int i = 0; i < mBucketCounts.length; i++) {
+                if (i > 0) {
+                    buckets.append(", ");
+                }
+                buckets.append(mBucketCounts[i]);
+            }
+            buckets.append(']');
+            return "Histogram{"
+                    + "mCount="
+                    + mCount
+                    + ", mAverageMillis="
+                    + (mCount == 0 ? 0 : mTotalMillis / mCount)
+                    + ", mMaxMillis="
+                    + mMaxMillis
+                    + ", mErrorCount="
+                    + mErrorCount
+                    + ", mTimeoutCount="
+                    + mTimeoutCount
+                    + ", mBucketCounts="
+                    + buckets
+                    + '}';
+        }
+    }
+}
@@ -50,7 +50,6 @@ import com.android.safetycenter.resources.SafetyCenterResourcesApk;
 import java.io.PrintWriter;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 
@@ -106,6 +105,10 @@ public final class SafetyCenterNotificationSender {
     private final ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> mNotifiedIssues =
             new ArrayMap<>();
 
+    private long mUpdateCount = 0;
+    private long mNotifyCount = 0;
+    private long mCancelCount = 0;
+
     private SafetyCenterNotificationSender(
             Context context,
             SafetyCenterNotificationFactory notificationFactory,
@@ -225,15 +228,22 @@ public final class SafetyCenterNotificationSender {
             return;
         }
 
+        mUpdateCount++;
+        ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> issuesToNotify =
+                getIssuesToNotify(userId);
+
+        // Most updates don't change the notified issues (e.g. a source refreshing with the same
+        // data), in which case there is nothing to post or cancel.
+        if (!hasNotifiedIssuesChanged(userId, issuesToNotify)) {
+            return;
+        }
+
         NotificationManager notificationManager = getNotificationManagerForUser(userId);
 
         if (notificationManager == null) {
             return;
         }
 
-        ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> issuesToNotify =
-                getIssuesToNotify(userId);
-
         // Post or update notifications for notifiable issues. We keep track of the "fresh" issues
         // keys of those issues which were just notified because doing so allows us to cancel any
         // notifications for other, non-fresh issues.
@@ -276,6 +286,14 @@ public final class SafetyCenterNotificationSender {
     public void dump(PrintWriter fout) {
         int notifiedIssuesCount = mNotifiedIssues.size();
         fout.println("NOTIFICATION SENDER (" + notifiedIssuesCount + " notified issues)");
+        fout.println(
+                "\t"
+                        + mUpdateCount
+                        + " updates, "
+                        + mNotifyCount
+                        + " notifications posted, "
+                        + mCancelCount
+                        + " notifications cancelled");
         for (int i = 0; i < notifiedIssuesCount; i++) {
             SafetyCenterIssueKey key = mNotifiedIssues.keyAt(i);
             SafetySourceIssue issue = mNotifiedIssues.valueAt(i);
@@ -284,19 +302,52 @@ public final class SafetyCenterNotificationSender {
         fout.println();
     }
 
+    /**
+     * Returns whether posting the given issues to notify for the given user would post, update or
+     * cancel any notification.
+     */
+    private boolean hasNotifiedIssuesChanged(
+            @UserIdInt int userId,
+            ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> issuesToNotify) {
+        for (int i = 0; i < issuesToNotify.size(); i++) {
+            if (!issuesToNotify.valueAt(i).equals(mNotifiedIssues.get(issuesToNotify.keyAt(i)))) {
+                return true;
+            }
+        }
+        for (int i = 0; i < mNotifiedIssues.size(); i++) {
+            SafetyCenterIssueKey key = mNotifiedIssues.keyAt(i);
+            if (key.getUserId() == userId && !issuesToNotify.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Gets all the key-issue pairs for which notifications should be posted or updated now. */
     private ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> getIssuesToNotify(
             @UserIdInt int userId) {
         ArrayMap<SafetyCenterIssueKey, SafetySourceIssue> result = new ArrayMap<>();
         List<SafetySourceIssueInfo> allIssuesInfo =
                 mSafetyCenterDataManager.getIssuesForUser(userId);
+        if (allIssuesInfo.isEmpty()) {
+            return result;
+        }
+
+        // Read the flags once rather than for each issue, as they are parsed on every read
+        ArraySet<String> notificationsAllowedSourceIds =
+                SafetyCenterFlags.getNotificationsAllowedSourceIds();
+        ArraySet<String> immediateNotificationBehaviorIssues =
+                SafetyCenterFlags.getImmediateNotificationBehaviorIssues();
+        Instant delayedIssuesThreshold =
+                Instant.now().minus(SafetyCenterFlags.getNotificationsMinDelay());
 
         for (int i = 0; i < allIssuesInfo.size(); i++) {
             SafetySourceIssueInfo issueInfo = allIssuesInfo.get(i);
             SafetyCenterIssueKey issueKey = issueInfo.getSafetyCenterIssueKey();
             SafetySourceIssue issue = issueInfo.getSafetySourceIssue();
 
-            if (!areNotificationsAllowedForSource(issueInfo.getSafetySource())) {
+            if (!areNotificationsAllowedForSource(
+                    issueInfo.getSafetySource(), notificationsAllowedSourceIds)) {
                 continue;
             }
 
@@ -307,11 +358,11 @@ public final class SafetyCenterNotificationSender {
 
             // Get the notification behavior for this issue which determines whether we should
             // send a notification about it now
-            int behavior = getBehavior(issue, issueKey);
+            int behavior = getBehavior(issue, issueKey, immediateNotificationBehaviorIssues);
             if (behavior == NOTIFICATION_BEHAVIOR_INTERNAL_IMMEDIATELY) {
                 result.put(issueKey, issue);
             } else if (behavior == NOTIFICATION_BEHAVIOR_INTERNAL_DELAYED) {
-                if (canNotifyDelayedIssueNow(issueKey)) {
+                if (canNotifyDelayedIssueNow(issueKey, delayedIssuesThreshold)) {
                     result.put(issueKey, issue);
                 }
                 // TODO(b/259094736): else handle delayed notifications using a scheduled job
@@ -321,7 +372,10 @@ public final class SafetyCenterNotificationSender {
     }
 
     @NotificationBehaviorInternal
-    private int getBehavior(SafetySourceIssue issue, SafetyCenterIssueKey issueKey) {
+    private int getBehavior(
+            SafetySourceIssue issue,
+            SafetyCenterIssueKey issueKey,
+            ArraySet<String> immediateNotificationBehaviorIssues) {
         if (SdkLevel.isAtLeastU()) {
             int notificationBehavior = issue.getNotificationBehavior();
             switch (notificationBehavior) {
@@ -332,39 +386,42 @@ public final class SafetyCenterNotificationSender {
                 case SafetySourceIssue.NOTIFICATION_BEHAVIOR_IMMEDIATELY:
                     return NOTIFICATION_BEHAVIOR_INTERNAL_IMMEDIATELY;
                 case SafetySourceIssue.NOTIFICATION_BEHAVIOR_UNSPECIFIED:
-                    return getBehaviorForIssueWithUnspecifiedBehavior(issue, issueKey);
+                    return getBehaviorForIssueWithUnspecifiedBehavior(
+                            issue, issueKey, immediateNotificationBehaviorIssues);
             }
             Log.w(
                     TAG,
                     "Unexpected SafetySourceIssue.NotificationBehavior: " + notificationBehavior);
         }
         // On Android T all issues are assumed to have "unspecified" behavior
-        return getBehaviorForIssueWithUnspecifiedBehavior(issue, issueKey);
+        return getBehaviorForIssueWithUnspecifiedBehavior(
+                issue, issueKey, immediateNotificationBehaviorIssues);
     }
 
     @NotificationBehaviorInternal
     private int getBehaviorForIssueWithUnspecifiedBehavior(
-            SafetySourceIssue issue, SafetyCenterIssueKey issueKey) {
+            SafetySourceIssue issue,
+            SafetyCenterIssueKey issueKey,
+            ArraySet<String> immediateNotificationBehaviorIssues) {
         String flagKey = issueKey.getSafetySourceId() + "/" + issue.getIssueTypeId();
-        if (SafetyCenterFlags.getImmediateNotificationBehaviorIssues().contains(flagKey)) {
+        if (immediateNotificationBehaviorIssues.contains(flagKey)) {
             return NOTIFICATION_BEHAVIOR_INTERNAL_IMMEDIATELY;
         } else {
             return NOTIFICATION_BEHAVIOR_INTERNAL_NEVER;
         }
     }
 
-    private boolean areNotificationsAllowedForSource(SafetySource safetySource) {
+    private static boolean areNotificationsAllowedForSource(
+            SafetySource safetySource, ArraySet<String> notificationsAllowedSourceIds) {
         if (SdkLevel.isAtLeastU()) {
             if (safetySource.areNotificationsAllowed()) {
                 return true;
             }
         }
-        return SafetyCenterFlags.getNotificationsAllowedSourceIds().contains(safetySource.getId());
+        return notificationsAllowedSourceIds.contains(safetySource.getId());
     }
 
-    private boolean canNotifyDelayedIssueNow(SafetyCenterIssueKey issueKey) {
-        Duration minNotificationsDelay = SafetyCenterFlags.getNotificationsMinDelay();
-        Instant threshold = Instant.now().minus(minNotificationsDelay);
+    private boolean canNotifyDelayedIssueNow(SafetyCenterIssueKey issueKey, Instant threshold) {
         Instant seenAt = mSafetyCenterDataManager.getIssueFirstSeenAt(issueKey);
         return seenAt != null && seenAt.isBefore(threshold);
     }
@@ -435,6 +492,7 @@ public final class SafetyCenterNotificationSender {
         final long callingId = Binder.clearCallingIdentity();
         try {
             // The fixed notification ID is OK because notifications are keyed by (tag, id)
+            mNotifyCount++;
             notificationManager.notify(tag, FIXED_NOTIFICATION_ID, notification);
             return true;
         } catch (Throwable e) {
@@ -457,6 +515,7 @@ public final class SafetyCenterNotificationSender {
         // This call is needed to cancel a notification previously sent from the system
         final long callingId = Binder.clearCallingIdentity();
         try {
+            mCancelCount++;
             notificationManager.cancel(tag, FIXED_NOTIFICATION_ID);
         } catch (Throwable e) {
             Log.w(TAG, "Unable to cancel system notification", e);